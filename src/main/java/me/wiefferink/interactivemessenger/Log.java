@@ -8,7 +8,7 @@ import java.util.logging.Logger;
 
 public class Log {
 
-	private static Logger logger;
+	private static volatile Logger logger;
 
 	/**
 	 * Set the logger
@@ -1,17 +1,22 @@
 package me.wiefferink.interactivemessenger.generators;
 
+import me.wiefferink.interactivemessenger.message.CompactMessage;
 import me.wiefferink.interactivemessenger.message.InteractiveMessage;
-import me.wiefferink.interactivemessenger.message.InteractiveMessagePart;
-import me.wiefferink.interactivemessenger.message.TextMessagePart;
+import me.wiefferink.interactivemessenger.message.MessageVisitor;
+import me.wiefferink.interactivemessenger.message.Style;
+import me.wiefferink.interactivemessenger.message.enums.Click;
 import me.wiefferink.interactivemessenger.message.enums.Color;
 import me.wiefferink.interactivemessenger.message.enums.Format;
+import me.wiefferink.interactivemessenger.message.enums.Hover;
 import org.bukkit.ChatColor;
 
 import java.util.EnumMap;
-import java.util.EnumSet;
-import java.util.Set;
 
-public class ConsoleGenerator {
+/**
+ * Generates a plain message with native formatting codes
+ * An instance collects the parts it visits, it can be passed to YamlParser#parse to generate without building a message first
+ */
+public class ConsoleGenerator implements MessageVisitor {
 
 	/**
 	 * Map Color to the native formatting codes used in chat (https://minecraft.gamepedia.com/Formatting_codes)
@@ -46,6 +51,31 @@ public class ConsoleGenerator {
 		put(Format.OBFUSCATE, 'k');
 	}};
 
+	/**
+	 * Native formatting codes for each style, starting from white without formatting
+	 */
+	private static final String[] styleCodes = new String[Style.COUNT];
+	static {
+		for(int id = 0; id < Style.COUNT; id++) {
+			Style style = Style.of(id);
+			StringBuilder codes = new StringBuilder();
+			if(style.getColor() != Color.WHITE) {
+				codes.append(ChatColor.COLOR_CHAR).append(colorCode.get(style.getColor()));
+			}
+			for(Format format : style.getFormatting()) {
+				codes.append(ChatColor.COLOR_CHAR).append(formatCode.get(format));
+			}
+			styleCodes[id] = codes.toString();
+		}
+	}
+
+	/**
+	 * Native formatting codes to go from one style to another, indexed by the ids of both styles
+	 * Rows and entries are filled when first used, most of the possible transitions never happen.
+	 */
+	private static final String[][] transitions = new String[Style.COUNT][];
+	private static final String RESET_CODE = ChatColor.RESET.toString();
+
 	/**
 	 * Parses the given message to a String containing control characters
 	 * for formatting that can be used for console outputs, but also for normal player
@@ -57,43 +87,141 @@ public class ConsoleGenerator {
 	 * @return Plain message that can be send
 	 */
 	public static String generate(InteractiveMessage message) {
-		StringBuilder result = new StringBuilder();
-		Color activeColor = Color.WHITE;
-		Set<Format> activeFormatting = EnumSet.noneOf(Format.class);
-		for(InteractiveMessagePart interactivePart : message) {
-			for(TextMessagePart textPart : interactivePart) {
-				// Use reset if there is formatting active we need to get rid of
-				if(!textPart.getFormatting().containsAll(activeFormatting)) {
-					result.append(ChatColor.RESET);
-					activeColor = Color.WHITE;
-					activeFormatting.clear();
-				}
-
-				// Color
-				if(activeColor != textPart.getColor()) {
-					result.append(ChatColor.COLOR_CHAR).append(colorCode.get(textPart.getColor()));
-					activeColor = textPart.getColor();
-				}
-
-				// Formatting
-				Set<Format> formattingToAdd = EnumSet.noneOf(Format.class);
-				formattingToAdd.addAll(textPart.getFormatting());
-				formattingToAdd.removeAll(activeFormatting);
-				for(Format format : formattingToAdd) {
-					result.append(ChatColor.COLOR_CHAR).append(formatCode.get(format));
-					activeFormatting.add(format);
-				}
-
-				// Text
-				result.append(textPart.getText());
-			}
+		ConsoleGenerator generator = new ConsoleGenerator();
+		message.accept(generator);
+		return generator.getResult();
+	}
+
+	/**
+	 * Parses the given message to a String containing control characters
+	 * for formatting that can be used for console outputs, but also for normal player
+	 * messages.
+	 * @param message The compact message
+	 * @return Plain message that can be send
+	 */
+	public static String generate(CompactMessage message) {
+		ConsoleGenerator generator = new ConsoleGenerator(message.getTextLength()+16);
+		message.accept(generator);
+		return generator.getResult();
+	}
+
+	private final StringBuilder result;
+	private Style activeStyle = Style.PLAIN;
+	private boolean inHover = false;
+
+	/**
+	 * Constructor
+	 */
+	public ConsoleGenerator() {
+		this(16);
+	}
+
+	/**
+	 * Constructor
+	 * @param capacity The expected length of the result
+	 */
+	public ConsoleGenerator(int capacity) {
+		result = new StringBuilder(capacity);
+	}
 
-            // Add newlines
-			if(interactivePart.hasNewline()) {
-				result.append("\n");
-            }
-        }
+	/**
+	 * Get the plain message for the parts that have been visited
+	 * @return Plain message that can be send
+	 */
+	public String getResult() {
 		return result.toString();
 	}
 
+	@Override
+	public void startPart() {
+		inHover = false;
+	}
+
+	@Override
+	public void text(Style style, char[] chars, int start, int end) {
+		// Hover content is not shown
+		if(inHover) {
+			return;
+		}
+
+		if(style != activeStyle) {
+			result.append(getTransition(activeStyle, style));
+			activeStyle = style;
+		}
+
+		// Text
+		result.append(chars, start, end-start);
+	}
+
+	/**
+	 * Get the native formatting codes to switch between styles
+	 * @param from The style that is active
+	 * @param to   The style to switch to
+	 * @return The shortest codes to get from one style to the other
+	 */
+	private static String getTransition(Style from, Style to) {
+		// Concurrent use can compute an entry twice, which gives the same result
+		String[] row = transitions[from.getId()];
+		if(row == null) {
+			row = new String[Style.COUNT];
+			transitions[from.getId()] = row;
+		}
+		String codes = row[to.getId()];
+		if(codes == null) {
+			codes = computeTransition(from, to);
+			row[to.getId()] = codes;
+		}
+		return codes;
+	}
+
+	/**
+	 * Determine the native formatting codes to switch between styles
+	 * @param from The style that is active
+	 * @param to   The style to switch to
+	 * @return The shortest codes to get from one style to the other
+	 */
+	private static String computeTransition(Style from, Style to) {
+		int formats = to.getFormats();
+		int activeFormats = from.getFormats();
+		if((formats & activeFormats) != activeFormats) {
+			// Use reset if there is formatting active we need to get rid of
+			return RESET_CODE+styleCodes[to.getId()];
+		}
+		if(from.isPlain()) {
+			return styleCodes[to.getId()];
+		}
+
+		StringBuilder codes = new StringBuilder();
+		// Color
+		if(from.getColor() != to.getColor()) {
+			codes.append(ChatColor.COLOR_CHAR).append(colorCode.get(to.getColor()));
+		}
+
+		// Formatting
+		int formatsToAdd = formats & ~activeFormats;
+		if(formatsToAdd != 0) {
+			codes.append(styleCodes[Style.of(Color.WHITE, formatsToAdd).getId()]);
+		}
+		return codes.toString();
+	}
+
+	@Override
+	public void click(Click click, String content) {
+		// Not shown
+	}
+
+	@Override
+	public void hover(Hover hover) {
+		inHover = true;
+	}
+
+	@Override
+	public void newline() {
+		result.append("\n");
+	}
+
+	@Override
+	public void endPart() {
+	}
+
 }
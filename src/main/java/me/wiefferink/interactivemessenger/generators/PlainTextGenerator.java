@@ -0,0 +1,116 @@
+package me.wiefferink.interactivemessenger.generators;
+
+import me.wiefferink.interactivemessenger.message.CompactMessage;
+import me.wiefferink.interactivemessenger.message.InteractiveMessage;
+import me.wiefferink.interactivemessenger.message.MessageVisitor;
+import me.wiefferink.interactivemessenger.message.Style;
+import me.wiefferink.interactivemessenger.message.enums.Click;
+import me.wiefferink.interactivemessenger.message.enums.Hover;
+import org.bukkit.ChatColor;
+
+/**
+ * Generates a message without any formatting, only the text that is shown
+ * Gives the same result as stripping the colors from the result of ConsoleGenerator, without generating and removing them
+ * (only stray color characters in the text that would combine with generated codes are kept).
+ * An instance collects the parts it visits, it can be passed to YamlParser#parse to generate without building a message first
+ */
+public class PlainTextGenerator implements MessageVisitor {
+
+	/**
+	 * Characters that form a native formatting code after ChatColor.COLOR_CHAR, as removed by ChatColor.stripColor
+	 */
+	private static final String FORMATTING_CODES = "0123456789abcdefklmnor";
+
+	/**
+	 * Parses the given message to a String without formatting
+	 * Hovers and other advanced tellraw enums will be skipped.
+	 * @param message The parsed InteractiveMessage
+	 * @return Plain message without formatting codes
+	 */
+	public static String generate(InteractiveMessage message) {
+		PlainTextGenerator generator = new PlainTextGenerator();
+		message.accept(generator);
+		return generator.getResult();
+	}
+
+	/**
+	 * Parses the given message to a String without formatting
+	 * @param message The compact message
+	 * @return Plain message without formatting codes
+	 */
+	public static String generate(CompactMessage message) {
+		PlainTextGenerator generator = new PlainTextGenerator(message.getTextLength());
+		message.accept(generator);
+		return generator.getResult();
+	}
+
+	private final StringBuilder result;
+	private boolean inHover = false;
+
+	/**
+	 * Constructor
+	 */
+	public PlainTextGenerator() {
+		this(16);
+	}
+
+	/**
+	 * Constructor
+	 * @param capacity The expected length of the result
+	 */
+	public PlainTextGenerator(int capacity) {
+		result = new StringBuilder(capacity);
+	}
+
+	/**
+	 * Get the plain message for the parts that have been visited
+	 * @return Plain message without formatting codes
+	 */
+	public String getResult() {
+		return result.toString();
+	}
+
+	@Override
+	public void startPart() {
+		inHover = false;
+	}
+
+	@Override
+	public void text(Style style, char[] chars, int start, int end) {
+		// Hover content is not shown
+		if(inHover) {
+			return;
+		}
+
+		// Leave out formatting codes that are part of the text itself, like stripping colors would
+		int cleanStart = start;
+		for(int i = start; i < end-1; i++) {
+			if(chars[i] == ChatColor.COLOR_CHAR && FORMATTING_CODES.indexOf(Character.toLowerCase(chars[i+1])) != -1) {
+				result.append(chars, cleanStart, i-cleanStart);
+				i++;
+				cleanStart = i+1;
+			}
+		}
+		result.append(chars, cleanStart, end-cleanStart);
+	}
+
+	@Override
+	public void click(Click click, String content) {
+		// Not shown
+	}
+
+	@Override
+	public void hover(Hover hover) {
+		inHover = true;
+	}
+
+	@Override
+	public void newline() {
+		result.append("\n");
+	}
+
+	@Override
+	public void endPart() {
+	}
+
+}
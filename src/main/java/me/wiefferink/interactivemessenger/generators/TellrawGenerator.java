@@ -1,18 +1,31 @@
 package me.wiefferink.interactivemessenger.generators;
 
+import me.wiefferink.interactivemessenger.message.CompactMessage;
 import me.wiefferink.interactivemessenger.message.InteractiveMessage;
-import me.wiefferink.interactivemessenger.message.InteractiveMessagePart;
-import me.wiefferink.interactivemessenger.message.TextMessagePart;
+import me.wiefferink.interactivemessenger.message.MessageVisitor;
+import me.wiefferink.interactivemessenger.message.RunBuffer;
+import me.wiefferink.interactivemessenger.message.Style;
 import me.wiefferink.interactivemessenger.message.enums.Click;
 import me.wiefferink.interactivemessenger.message.enums.Color;
 import me.wiefferink.interactivemessenger.message.enums.Format;
 import me.wiefferink.interactivemessenger.message.enums.Hover;
 
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.EnumMap;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
-public class TellrawGenerator {
+/**
+ * Generates the JSON used by the tellraw command
+ * An instance collects the parts it visits, it can be passed to YamlParser#parse to generate without building a message first
+ */
+public class TellrawGenerator implements MessageVisitor {
 
 	/**
 	 * Map Format to the JSON keys used in tellraw (https://minecraft.gamepedia.com/Commands#Raw_JSON_text)
@@ -25,6 +38,30 @@ public class TellrawGenerator {
 		put(Format.OBFUSCATE, "obfuscated");
 	}};
 
+	/**
+	 * JSON fields for each style, to be added after the text field of a component
+	 */
+	private static final String[] styleJson = new String[Style.COUNT];
+	static {
+		for(int id = 0; id < Style.COUNT; id++) {
+			Style style = Style.of(id);
+			StringBuilder json = new StringBuilder();
+			// Color
+			if(style.getColor() != Color.WHITE) {
+				json.append(",\"color\":\"");
+				json.append(style.getColor().name().toLowerCase());
+				json.append("\"");
+			}
+			// Formatting
+			for(Format formatting : style.getFormatting()) {
+				json.append(",\"");
+				json.append(formatJsonKey.get(formatting));
+				json.append("\":true");
+			}
+			styleJson[id] = json.toString();
+		}
+	}
+
 	/**
 	 * Map Click to the JSON keys used in tellraw (https://minecraft.gamepedia.com/Commands#Raw_JSON_text)
 	 */
@@ -41,6 +78,36 @@ public class TellrawGenerator {
 		put(Hover.HOVER, "show_text");
 	}};
 
+	/**
+	 * Escape table for characters below 128: 0 if the character can be printed as-is,
+	 * otherwise the character to print after the backslash ('u' for a four digit hexadecimal escape)
+	 */
+	private static final int ESCAPE_TABLE_SIZE = 128;
+	private static final char[] compactEscapes = new char[ESCAPE_TABLE_SIZE];
+	private static final char[] safeEscapes;
+	static {
+		// Escapes required by JSON
+		for(char c = 0; c <= '\u001F'; c++) {
+			compactEscapes[c] = 'u';
+		}
+		compactEscapes['"'] = '"';
+		compactEscapes['\\'] = '\\';
+		compactEscapes['\b'] = 'b';
+		compactEscapes['\t'] = 't';
+		compactEscapes['\n'] = 'n';
+		compactEscapes['\f'] = 'f';
+		compactEscapes['\r'] = 'r';
+		// Also escape characters that are troublesome when JSON ends up in HTML or JavaScript (U+0080-U+009F and U+2000-U+20FF are handled in printJsonString)
+		safeEscapes = Arrays.copyOf(compactEscapes, ESCAPE_TABLE_SIZE);
+		safeEscapes['/'] = '/';
+		safeEscapes['\u007F'] = 'u';
+	}
+	private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+	// Escaping and component structure used by new generators
+	private static volatile boolean defaultCompactEscaping = false;
+	private static volatile boolean defaultMinimizeComponents = false;
+
 	/* Thoughts about printing JSON that is as small as possible
 	 *
 	 * Message structure:
@@ -76,6 +143,59 @@ public class TellrawGenerator {
 	 *
 	 */
 
+	// Released generators that can be reused, kept by this class instead of by threads so nothing stays behind in server threads after a plugin reload
+	private static final int POOL_SIZE = 8;
+	private static final BlockingQueue<TellrawGenerator> pool = new ArrayBlockingQueue<>(POOL_SIZE);
+	// Buffers bigger than this are dropped when releasing, one huge message should not keep its memory in use forever
+	private static final int MAX_KEPT_BUFFER = 32*1024;
+	private boolean inUse = false;
+
+	// Resulting JSON lines, each one should be printed on a new line (separate /tellraw command to provide 1.7 compatibility, unless using a single component)
+	// Line i is output[lineEnds[i-1], lineEnds[i])
+	private char[] output = new char[256];
+	private CharBuffer outputView = CharBuffer.wrap(output);
+	private int[] lineEnds = new int[4];
+	private int lineCount = 0;
+	private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+
+	// Current line, combining parts without newlines
+	private static final String LINE_START = "{\"text\":\"\",\"extra\":[";
+	private final StringBuilder line = new StringBuilder();
+	private int lineParts = 0;
+	private boolean lineStarted = false;
+
+	// Lines longer than this are split between parts, or between text runs of parts without click and hover
+	private int maximumLength = Integer.MAX_VALUE;
+	// Set when a part cannot be split small enough, generating stops there
+	private boolean tooBig = false;
+	// Put all lines in one component with line breaks in the text, only supported by 1.8 and later clients
+	private static final String NEWLINE_JSON = "\"\\n\"";
+	private boolean singleComponent = false;
+	// Line breaks of the single component that still need to be added
+	private int pendingNewlines = 0;
+
+	// Current part, text runs and hover runs are collected until the part ends
+	private final StringBuilder partText = new StringBuilder();
+	private int partTextRuns = 0;
+	// End of the JSON of each text run in partText
+	private int[] partTextRunEnds = new int[8];
+	private final StringBuilder partJson = new StringBuilder();
+	private Style partFirstStyle;
+	private final StringBuilder partHover = new StringBuilder();
+	private int partHoverRuns = 0;
+	private Click click;
+	private String clickContent;
+	private Hover hover;
+	private boolean newline;
+	// Buffer for strings that need escaping
+	private char[] scratch = new char[64];
+	// Only escape what JSON requires
+	private boolean compactEscaping = defaultCompactEscaping;
+	// Collect the runs of a part to print them with as little JSON as possible
+	private boolean minimizeComponents = defaultMinimizeComponents;
+	private final RunBuffer textRuns = new RunBuffer();
+	private final RunBuffer hoverRuns = new RunBuffer();
+
 	/**
 	 * Parses the given message to a JSON array that can be
 	 * used with the tellraw command and the like.
@@ -83,124 +203,567 @@ public class TellrawGenerator {
 	 * @return JSON string that can be send to a player (multiple means line breaks have been used)
 	 */
 	public static List<String> generate(InteractiveMessage message) {
-		message = message.copy();
-		// Resulting JSON strings, each one should be printed on a new line (separate /tellraw command to provide 1.7 compatibility)
-		List<String> result = new ArrayList<>();
-
-		// Combine InteractiveMessageParts without newlines into a group
-		List<InteractiveMessagePart> combine = new ArrayList<>();
-		while(!message.isEmpty()) {
-			InteractiveMessagePart part = message.removeFirst();
-			// Skip empty newline parts
-			if(!(part.hasNewline() && part.isEmpty())) {
-				combine.add(part);
+		TellrawGenerator generator = acquire();
+		try {
+			message.accept(generator);
+			return generator.getResult();
+		} finally {
+			generator.release();
+		}
+	}
+
+	/**
+	 * Parses the given message to a JSON array that can be
+	 * used with the tellraw command and the like.
+	 * @param message The compact message
+	 * @return JSON string that can be send to a player (multiple means line breaks have been used)
+	 */
+	public static List<String> generate(CompactMessage message) {
+		TellrawGenerator generator = acquire();
+		try {
+			message.accept(generator);
+			return generator.getResult();
+		} finally {
+			generator.release();
+		}
+	}
+
+	/**
+	 * Get an empty generator that reuses the buffers of a released generator if there is one
+	 * Call {@link #release()} when done with the result, the generator and the buffers it handed out should not be used after that.
+	 * @return Empty generator
+	 */
+	public static TellrawGenerator acquire() {
+		TellrawGenerator generator = pool.poll();
+		if(generator == null) {
+			generator = new TellrawGenerator();
+		}
+		generator.reset();
+		generator.compactEscaping = defaultCompactEscaping;
+		generator.minimizeComponents = defaultMinimizeComponents;
+		generator.maximumLength = Integer.MAX_VALUE;
+		generator.singleComponent = false;
+		generator.inUse = true;
+		return generator;
+	}
+
+	/**
+	 * Set if generators should only escape characters in strings when JSON requires it
+	 * Safe escaping (the default) also escapes '/', control characters and U+2000-U+20FF, which keeps the JSON safe to embed in HTML or JavaScript.
+	 * Compact escaping gives shorter JSON, the client shows the same message either way.
+	 * @param enabled true to use compact escaping, false to use safe escaping
+	 */
+	public static void useCompactEscaping(boolean enabled) {
+		defaultCompactEscaping = enabled;
+	}
+
+	/**
+	 * Set if this generator should only escape characters in strings when JSON requires it
+	 * @param enabled true to use compact escaping, false to use safe escaping
+	 * @return this
+	 * @see #useCompactEscaping(boolean)
+	 */
+	public TellrawGenerator compactEscaping(boolean enabled) {
+		compactEscaping = enabled;
+		return this;
+	}
+
+	/**
+	 * Set if generators should print parts with as few components and fields as possible
+	 * Text with the same style is combined, style shared by all text of a part is only printed once on the part
+	 * and parts without text are left out. The client shows the same message either way.
+	 * @param enabled true to minimize components, false to print each text run as a separate component
+	 */
+	public static void useMinimizedComponents(boolean enabled) {
+		defaultMinimizeComponents = enabled;
+	}
+
+	/**
+	 * Set if this generator should print parts with as few components and fields as possible
+	 * @param enabled true to minimize components, false to print each text run as a separate component
+	 * @return this
+	 * @see #useMinimizedComponents(boolean)
+	 */
+	public TellrawGenerator minimizeComponents(boolean enabled) {
+		minimizeComponents = enabled;
+		return this;
+	}
+
+	/**
+	 * Set the maximum length of the JSON lines of this generator
+	 * Lines that would get longer are continued in a new JSON line, split between parts so that clicks and hovers stay intact.
+	 * Parts without click and hover are split between their text runs if they are too long by themselves.
+	 * When that is not enough, generating stops and {@link #isTooBig()} returns true.
+	 * @param maximumLength The maximum number of characters of a JSON line, Integer.MAX_VALUE to never split
+	 * @return this
+	 */
+	public TellrawGenerator maximumLength(int maximumLength) {
+		this.maximumLength = maximumLength;
+		return this;
+	}
+
+	/**
+	 * Set if this generator should put all lines in a single component, with line breaks in the text
+	 * This needs only one tellraw command for the whole message, but 1.7 clients do not support it.
+	 * When a maximum length is set the message can still be split, preferably at a line break.
+	 * @param enabled true to generate a single component, false to generate a JSON line for each line
+	 * @return this
+	 */
+	public TellrawGenerator singleComponent(boolean enabled) {
+		singleComponent = enabled;
+		return this;
+	}
+
+	/**
+	 * Check if the visited parts could not be split to fit within the maximum length
+	 * @return true if generating has been stopped and the result is incomplete, otherwise false
+	 */
+	public boolean isTooBig() {
+		return tooBig;
+	}
+
+	/**
+	 * Hand back a generator acquired with {@link #acquire()}, it can then be reused by the next acquire()
+	 */
+	public void release() {
+		if(!inUse) {
+			return;
+		}
+		inUse = false;
+		if(output.length > MAX_KEPT_BUFFER) {
+			output = new char[256];
+			outputView = CharBuffer.wrap(output);
+		}
+		if(lineEnds.length > MAX_KEPT_BUFFER) {
+			lineEnds = new int[4];
+		}
+		if(partTextRunEnds.length > MAX_KEPT_BUFFER) {
+			partTextRunEnds = new int[8];
+		}
+		if(scratch.length > MAX_KEPT_BUFFER) {
+			scratch = new char[64];
+		}
+		shrink(line);
+		shrink(partText);
+		shrink(partJson);
+		shrink(partHover);
+		textRuns.shrink(MAX_KEPT_BUFFER);
+		hoverRuns.shrink(MAX_KEPT_BUFFER);
+		pool.offer(this);
+	}
+
+	/**
+	 * Empty a StringBuilder and free its memory if it is bigger than the buffers that are kept
+	 * @param builder The StringBuilder to shrink
+	 */
+	private static void shrink(StringBuilder builder) {
+		if(builder.capacity() > MAX_KEPT_BUFFER) {
+			builder.setLength(0);
+			builder.trimToSize();
+		}
+	}
+
+	/**
+	 * Drop the released generators that are kept for reuse, freeing their buffers
+	 * Plugins can call this in onDisable(), generators acquired after this start with new buffers.
+	 */
+	public static void clear() {
+		pool.clear();
+	}
+
+	/**
+	 * Remove everything that has been generated, keeping the buffers to reuse them
+	 * @return this
+	 */
+	public TellrawGenerator reset() {
+		tooBig = false;
+		pendingNewlines = 0;
+		lineCount = 0;
+		line.setLength(0);
+		lineParts = 0;
+		lineStarted = false;
+		return this;
+	}
+
+	/**
+	 * Get the JSON strings for the parts that have been visited
+	 * @return JSON string that can be send to a player (multiple means line breaks have been used)
+	 */
+	public List<String> getResult() {
+		finish();
+		List<String> result = new ArrayList<>(lineCount);
+		for(int i = 0; i < lineCount; i++) {
+			int start = getLineStart(i);
+			result.add(new String(output, start, lineEnds[i]-start));
+		}
+		return result;
+	}
+
+	/**
+	 * Get the number of JSON lines for the parts that have been visited
+	 * @return The number of lines, each line should be send separately
+	 */
+	public int getLineCount() {
+		finish();
+		return lineCount;
+	}
+
+	/**
+	 * Get the length of a JSON line
+	 * @param index The index of the line
+	 * @return The number of characters of the line
+	 */
+	public int getLineLength(int index) {
+		finish();
+		return lineEnds[index]-getLineStart(index);
+	}
+
+	/**
+	 * Get a JSON line without creating a String
+	 * @param index The index of the line
+	 * @return View on the buffer of this generator, only valid until the next call on this generator
+	 */
+	public CharBuffer getLine(int index) {
+		finish();
+		outputView.limit(lineEnds[index]).position(getLineStart(index));
+		return outputView;
+	}
+
+	/**
+	 * Encode a JSON line as UTF-8 into a buffer
+	 * @param index  The index of the line
+	 * @param target The buffer to write the bytes to
+	 * @return true if the line has been written, false if the target does not have enough room left
+	 */
+	public boolean writeLine(int index, ByteBuffer target) {
+		CharBuffer source = getLine(index);
+		int targetPosition = target.position();
+		encoder.reset();
+		if(encoder.encode(source, target, true).isOverflow() || encoder.flush(target).isOverflow()) {
+			target.position(targetPosition);
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Get the start of a line in the output buffer
+	 * @param index The index of the line
+	 * @return Index of the first character of the line
+	 */
+	private int getLineStart(int index) {
+		return index == 0 ? 0 : lineEnds[index-1];
+	}
+
+	/**
+	 * Print the last line if it did not end with a newline
+	 */
+	private void finish() {
+		// A line break at the end is not needed, more than one gives empty lines
+		for(; pendingNewlines > 1; pendingNewlines--) {
+			addNewlineToLine();
+		}
+		pendingNewlines = 0;
+		if(lineStarted) {
+			endLine();
+		}
+	}
+
+	@Override
+	public void startPart() {
+		partText.setLength(0);
+		partTextRuns = 0;
+		partFirstStyle = null;
+		partHover.setLength(0);
+		partHoverRuns = 0;
+		textRuns.clear();
+		hoverRuns.clear();
+		click = null;
+		clickContent = null;
+		hover = null;
+		newline = false;
+		lineStarted = true;
+	}
+
+	@Override
+	public void text(Style style, char[] chars, int start, int end) {
+		if(tooBig) {
+			return;
+		}
+
+		if(minimizeComponents) {
+			if(hover == null) {
+				textRuns.add(style, chars, start, end);
+				// Text runs cannot be split
+				tooBig = end-start > maximumLength;
+			} else {
+				hoverRuns.add(style, chars, start, end);
+				// Hovers cannot be split
+				tooBig = hoverRuns.getEnd(hoverRuns.size()-1) > maximumLength;
 			}
-			// If we need to go to the next line or we got all the parts, print it
-			if(part.hasNewline() || message.isEmpty()) {
-				String lineResult = "\"\"";
-				if(combine.size() == 1) {
-					lineResult = toJson(combine.get(0), new StringBuilder()).toString();
-				} else if(combine.size() > 1) {
-					StringBuilder nextLine = new StringBuilder("{\"text\":\"\",\"extra\":[");
-					for(int i = 0; i < combine.size(); i++) {
-						if(i != 0) {
-							nextLine.append(",");
-						}
-						toJson(combine.get(i), nextLine);
-					}
-					nextLine.append("]}");
-					lineResult = nextLine.toString();
-				}
-				// Handle bare string case (wrap in array)
-				if(lineResult.charAt(0) == '"' && lineResult.charAt(lineResult.length()-1) == '"') {
-					lineResult = '['+lineResult+']';
+			return;
+		}
+
+		if(hover == null) {
+			if(partTextRuns == 0) {
+				partFirstStyle = style;
+			} else {
+				partText.append(',');
+			}
+			int runStart = partText.length();
+			runToJson(style, chars, start, end, partText);
+			if(partTextRuns == partTextRunEnds.length) {
+				partTextRunEnds = Arrays.copyOf(partTextRunEnds, partTextRuns*2);
+			}
+			partTextRunEnds[partTextRuns] = partText.length();
+			partTextRuns++;
+			// Text runs cannot be split
+			tooBig = partText.length()-runStart > maximumLength;
+		} else {
+			if(partHoverRuns != 0) {
+				partHover.append(',');
+			}
+			runToJson(style, chars, start, end, partHover);
+			partHoverRuns++;
+			// Hovers cannot be split
+			tooBig = partHover.length() > maximumLength;
+		}
+	}
+
+	@Override
+	public void click(Click click, String content) {
+		this.click = click;
+		this.clickContent = content;
+	}
+
+	@Override
+	public void hover(Hover hover) {
+		this.hover = hover;
+	}
+
+	@Override
+	public void newline() {
+		newline = true;
+	}
+
+	@Override
+	public void endPart() {
+		if(tooBig) {
+			return;
+		}
+
+		// Skip empty newline parts, when minimizing skip all empty parts
+		boolean empty = minimizeComponents ? textRuns.isEmpty() : partTextRuns == 0;
+		if(!empty || (!newline && !minimizeComponents)) {
+			partJson.setLength(0);
+			if(minimizeComponents) {
+				minimizedPartToJson(partJson);
+			} else {
+				partToJson(partJson);
+			}
+			if(!addToLine(partJson)) {
+				splitPart();
+				if(tooBig) {
+					return;
 				}
-				result.add(lineResult);
-				combine.clear();
 			}
 		}
-		return result;
+
+		// If we need to go to the next line, print it
+		if(newline) {
+			if(singleComponent) {
+				pendingNewlines++;
+			} else {
+				endLine();
+			}
+		}
+	}
+
+	/**
+	 * Add the JSON of a part to the current line, continuing in a new line if it does not fit
+	 * @param json The JSON component to add
+	 * @return true if the component has been added, false if it does not fit in a line by itself
+	 */
+	private boolean addToLine(StringBuilder json) {
+		// Line breaks of a single component are added in front of the next component
+		if(pendingNewlines > 0) {
+			if(lineParts > 0 && getLineLengthWith(pendingNewlines*(NEWLINE_JSON.length()+1)+json.length()) > maximumLength) {
+				// Continue in a separate JSON line, which replaces one line break
+				endLine();
+				lineStarted = true;
+				pendingNewlines--;
+			}
+			for(; pendingNewlines > 0; pendingNewlines--) {
+				addNewlineToLine();
+			}
+		}
+
+		if(lineParts > 0 && getLineLengthWith(json.length()) > maximumLength) {
+			// Continue in a separate JSON line
+			endLine();
+			lineStarted = true;
+		}
+		if(getLineLengthWith(json.length()) > maximumLength) {
+			return false;
+		}
+		appendToLine(json);
+		return true;
 	}
 
+	/**
+	 * Add a line break to the current line, or continue in a new JSON line if it does not fit
+	 */
+	private void addNewlineToLine() {
+		if(lineParts > 0 && getLineLengthWith(NEWLINE_JSON.length()) > maximumLength) {
+			// A separate JSON line starts on a new line anyway
+			endLine();
+			lineStarted = true;
+		} else {
+			appendToLine(NEWLINE_JSON);
+		}
+	}
+
+	/**
+	 * Append a component to the current line
+	 * @param json The JSON component to append
+	 */
+	private void appendToLine(CharSequence json) {
+		if(lineParts == 1) {
+			line.insert(0, LINE_START);
+		}
+		if(lineParts > 0) {
+			line.append(',');
+		}
+		line.append(json);
+		lineParts++;
+	}
+
+	/**
+	 * Add the current part as separate text runs, when it is too long to fit in a line
+	 * Only possible when there is no click or hover, otherwise the result is marked as too big.
+	 */
+	private void splitPart() {
+		boolean hasHover = hover != null && (minimizeComponents ? !hoverRuns.isEmpty() : partHoverRuns != 0);
+		int runs = minimizeComponents ? textRuns.size() : partTextRuns;
+		if(click != null || hasHover || runs <= 1) {
+			tooBig = true;
+			return;
+		}
+
+		for(int run = 0; run < runs; run++) {
+			partJson.setLength(0);
+			if(minimizeComponents) {
+				runToJson(textRuns.getStyle(run), textRuns.getChars(), textRuns.getStart(run), textRuns.getEnd(run), partJson);
+			} else {
+				// Skip the comma between the runs
+				int runStart = run == 0 ? 0 : partTextRunEnds[run-1]+1;
+				partJson.append(partText, runStart, partTextRunEnds[run]);
+			}
+			if(!addToLine(partJson)) {
+				tooBig = true;
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Get the length the current line would get when adding a component
+	 * @param componentLength The length of the component to add
+	 * @return The length of the line when it would be ended after adding the component
+	 */
+	private int getLineLengthWith(int componentLength) {
+		if(lineParts == 0) {
+			// Might get wrapped in an array
+			return componentLength+2;
+		}
+		// Comma before the component and closing "]}"
+		int length = line.length()+1+componentLength+2;
+		if(lineParts == 1) {
+			length += LINE_START.length();
+		}
+		return length;
+	}
+
+	/**
+	 * Add the current line to the result
+	 */
+	private void endLine() {
+		if(lineParts == 0) {
+			line.append("\"\"");
+		} else if(lineParts > 1) {
+			line.append("]}");
+		}
+		// Handle bare string case (wrap in array)
+		if(line.charAt(0) == '"' && line.charAt(line.length()-1) == '"') {
+			line.insert(0, '[').append(']');
+		}
+		int start = getLineStart(lineCount);
+		int end = start+line.length();
+		if(end > output.length) {
+			output = Arrays.copyOf(output, Math.max(output.length*2, end));
+			outputView = CharBuffer.wrap(output);
+		}
+		line.getChars(0, line.length(), output, start);
+		if(lineCount == lineEnds.length) {
+			lineEnds = Arrays.copyOf(lineEnds, lineCount*2);
+		}
+		lineEnds[lineCount] = end;
+		lineCount++;
+		line.setLength(0);
+		lineParts = 0;
+		lineStarted = false;
+	}
 
 	/**
-	 * Get a JSON component for this message part
-	 * @param part The InteractiveMessagePart to be printed
+	 * Get a JSON component for the current part
 	 * @param sb The StringBuilder to append the result to
 	 * @return The StringBuilder where the JSON has been appended to
 	 */
-	private static StringBuilder toJson(InteractiveMessagePart part, StringBuilder sb) {
+	private StringBuilder partToJson(StringBuilder sb) {
 		// Error case, should never happen, print something as safeguard
-		if(part.size() == 0) {
+		if(partTextRuns == 0) {
 			sb.append("\"\"");
 			return sb;
 		}
 
 		// Only wrap if there are interactive parts to be added
 		String finalCloser = "";
-		String arrayCloser = "";
 		boolean isInExtra = false;
-		if(part.isInteractive() || part.size() > 1) {
+		if(click != null || hover != null || partTextRuns > 1) {
 			sb.append("{\"text\":");
 			finalCloser = "}";
 			isInExtra = true;
 		}
 
-		// Add TextMessageParts
-		if(part.size() == 1) {
-			if(part.getFirst().hasFormatting() && isInExtra) {
+		// Add text runs
+		if(partTextRuns == 1) {
+			boolean wrap = !partFirstStyle.isPlain() && isInExtra;
+			if(wrap) {
 				sb.append("\"\",\"extra\":[");
 			}
-			toJson(part.getFirst(), sb);
-			if(part.getFirst().hasFormatting() && isInExtra) {
+			sb.append(partText);
+			if(wrap) {
 				sb.append("]");
 			}
 		} else {
-			if(!isInExtra) {
-				sb.append("{\"text\":");
-			}
 			sb.append("\"\",\"extra\":[");
-			for(TextMessagePart textPart : part) {
-				toJson(textPart, sb);
-				sb.append(',');
-			}
-			sb.deleteCharAt(sb.length()-1); // Remove trailing comma
+			sb.append(partText);
 			sb.append("]");
-			if(!isInExtra) {
-				sb.append("}");
-			}
 		}
-		sb.append(arrayCloser);
 
 		// Add click action
-		if(part.getOnClick() != null) {
-			sb.append(',');
-			sb.append("\"clickEvent\":{");
-			sb.append("\"action\":\"");
-			sb.append(clickJsonKey.get(part.getOnClick()));
-			sb.append("\",");
-			sb.append("\"value\":");
-			printJsonString(part.getOnClickContent(), sb);
-			sb.append('}');
+		if(click != null) {
+			clickToJson(sb);
 		}
 
 		// Add hover action
-		if(part.getOnHover() != null && !part.getOnHoverContent().isEmpty()) {
-			sb.append(',');
-			sb.append("\"hoverEvent\":{");
-			sb.append("\"action\":\"");
-			sb.append(hoverJsonKey.get(part.getOnHover()));
-			sb.append("\",");
-			sb.append("\"value\":");
-			if(part.getOnHoverContent().size() == 1) {
-				toJson(part.getOnHoverContent().getFirst(), sb);
+		if(hover != null && partHoverRuns != 0) {
+			hoverStartToJson(sb);
+			if(partHoverRuns == 1) {
+				sb.append(partHover);
 			} else {
 				sb.append("{\"text\":\"\",\"extra\":[");
-				for(TextMessagePart hoverPart : part.getOnHoverContent()) {
-					toJson(hoverPart, sb);
-					sb.append(',');
-				}
-				sb.deleteCharAt(sb.length()-1); // Remove trailing comma
+				sb.append(partHover);
 				sb.append("]}");
 			}
 			sb.append('}');
@@ -211,15 +774,130 @@ public class TellrawGenerator {
 	}
 
 	/**
-	 * Get a JSON component for this message part
-	 * @param part The TextMessagePart to print
-	 * @param sb The StringBuilder to append the JSON result to
+	 * Get a minimal JSON component for the current part from the collected runs
+	 * @param sb The StringBuilder to append the result to
+	 * @return The StringBuilder where the JSON has been appended to
+	 */
+	private StringBuilder minimizedPartToJson(StringBuilder sb) {
+		boolean hasHover = hover != null && !hoverRuns.isEmpty();
+
+		// Plain text or a single text component
+		if(click == null && !hasHover && textRuns.size() == 1) {
+			return runToJson(textRuns.getStyle(0), textRuns.getChars(), textRuns.getStart(0), textRuns.getEnd(0), sb);
+		}
+
+		openComponent(textRuns, sb);
+		if(click != null) {
+			clickToJson(sb);
+		}
+		if(hasHover) {
+			hoverStartToJson(sb);
+			if(hoverRuns.size() == 1) {
+				runToJson(hoverRuns.getStyle(0), hoverRuns.getChars(), hoverRuns.getStart(0), hoverRuns.getEnd(0), sb);
+			} else {
+				openComponent(hoverRuns, sb);
+				sb.append('}');
+			}
+			sb.append('}');
+		}
+		sb.append('}');
+		return sb;
+	}
+
+	/**
+	 * Start a component containing runs, style shared by all runs is printed on the component itself
+	 * When the first run has no style of its own, its text is used as text of the component.
+	 * @param runs The runs to print
+	 * @param sb   The StringBuilder to append the component to, without the closing brace
+	 * @return The StringBuilder where the JSON has been appended to
+	 */
+	private StringBuilder openComponent(RunBuffer runs, StringBuilder sb) {
+		// Find the style shared by all runs, the children inherit it
+		Color sharedColor = runs.isEmpty() ? Color.WHITE : runs.getStyle(0).getColor();
+		int sharedFormats = runs.isEmpty() ? 0 : runs.getStyle(0).getFormats();
+		for(int run = 1; run < runs.size(); run++) {
+			Style style = runs.getStyle(run);
+			if(style.getColor() != sharedColor) {
+				sharedColor = Color.WHITE;
+			}
+			sharedFormats &= style.getFormats();
+		}
+		Style shared = Style.of(sharedColor, sharedFormats);
+
+		sb.append("{\"text\":");
+		int firstChild = 0;
+		if(!runs.isEmpty() && ownStyle(runs.getStyle(0), shared).isPlain()) {
+			printJsonString(runs.getChars(), runs.getStart(0), runs.getEnd(0), sb);
+			firstChild = 1;
+		} else {
+			sb.append("\"\"");
+		}
+		sb.append(styleJson[shared.getId()]);
+		if(firstChild < runs.size()) {
+			sb.append(",\"extra\":[");
+			for(int run = firstChild; run < runs.size(); run++) {
+				if(run > firstChild) {
+					sb.append(',');
+				}
+				runToJson(ownStyle(runs.getStyle(run), shared), runs.getChars(), runs.getStart(run), runs.getEnd(run), sb);
+			}
+			sb.append(']');
+		}
+		return sb;
+	}
+
+	/**
+	 * Get the part of a style that is not inherited from the parent component
+	 * @param style  The style of the text
+	 * @param shared The style of the parent component, as found by openComponent
+	 * @return The style that should be printed on the text
+	 */
+	private static Style ownStyle(Style style, Style shared) {
+		Color color = style.getColor() == shared.getColor() ? Color.WHITE : style.getColor();
+		return Style.of(color, style.getFormats() & ~shared.getFormats());
+	}
+
+	/**
+	 * Add the click action of the current part to a component
+	 * @param sb The StringBuilder to append the JSON to
+	 */
+	private void clickToJson(StringBuilder sb) {
+		sb.append(',');
+		sb.append("\"clickEvent\":{");
+		sb.append("\"action\":\"");
+		sb.append(clickJsonKey.get(click));
+		sb.append("\",");
+		sb.append("\"value\":");
+		printJsonString(clickContent, sb);
+		sb.append('}');
+	}
+
+	/**
+	 * Start the hover action of the current part, the value and closing brace should be added after this
+	 * @param sb The StringBuilder to append the JSON to
+	 */
+	private void hoverStartToJson(StringBuilder sb) {
+		sb.append(',');
+		sb.append("\"hoverEvent\":{");
+		sb.append("\"action\":\"");
+		sb.append(hoverJsonKey.get(hover));
+		sb.append("\",");
+		sb.append("\"value\":");
+	}
+
+	/**
+	 * Get a JSON component for a text run
+	 * @param style The style of the text
+	 * @param chars Buffer containing the text
+	 * @param start Index of the first character of the text
+	 * @param end   Index after the last character of the text
+	 * @param sb    The StringBuilder to append the JSON result to
 	 * @return The StringBuilder where the result has been appended to
 	 */
-	private static StringBuilder toJson(TextMessagePart part, StringBuilder sb) {
+	private StringBuilder runToJson(Style style, char[] chars, int start, int end, StringBuilder sb) {
 		// Simple string
-		if(!part.hasFormatting()) {
-			printJsonString(part.getText(), sb);
+		if(style.isPlain()) {
+			printJsonString(chars, start, end, sb);
 			return sb;
 		}
 
@@ -228,21 +906,10 @@ public class TellrawGenerator {
 
 		// Text
 		sb.append("\"text\":");
-		printJsonString(part.getText(), sb);
-
-		// Color
-		if(part.getColor() != Color.WHITE) {
-			sb.append(",\"color\":\"");
-			sb.append(part.getColor().name().toLowerCase());
-			sb.append("\"");
-		}
+		printJsonString(chars, start, end, sb);
 
-		// Formatting
-		for(Format formatting : part.getFormatting()) {
-			sb.append(",\"");
-			sb.append(formatJsonKey.get(formatting));
-			sb.append("\":true");
-		}
+		// Color and formatting
+		sb.append(styleJson[style.getId()]);
 
 		sb.append('}');
 		return sb;
@@ -254,53 +921,57 @@ public class TellrawGenerator {
 	 * @param sb     The StringBuilder to add the quoted string to
 	 * @return sb
 	 */
-	private static StringBuilder printJsonString(String string, StringBuilder sb) {
+	private StringBuilder printJsonString(String string, StringBuilder sb) {
 		if(string == null || string.length() == 0) {
 			sb.append("\"\"");
 			return sb;
 		}
+		if(string.length() > scratch.length) {
+			scratch = new char[Math.max(scratch.length*2, string.length())];
+		}
+		string.getChars(0, string.length(), scratch, 0);
+		return printJsonString(scratch, 0, string.length(), sb);
+	}
 
+	/**
+	 * Produce a string in double quotes with backslash sequences in all the right places.
+	 * Ranges without characters to escape are appended at once.
+	 * @param chars The characters to print from
+	 * @param start The index of the first character to print
+	 * @param end   The index after the last character to print
+	 * @param sb    The StringBuilder to add the quoted string to
+	 * @return sb
+	 */
+	private StringBuilder printJsonString(char[] chars, int start, int end, StringBuilder sb) {
+		char[] escapes = compactEscaping ? compactEscapes : safeEscapes;
 		sb.append('"');
-		for(int i = 0; i < string.length(); i++) {
-			char c = string.charAt(i);
-			switch(c) {
-				case '\\':
-				case '"':
-					sb.append('\\');
-					sb.append(c);
-					break;
-				case '/':
-					sb.append('\\');
-					sb.append(c);
-					break;
-				case '\b':
-					sb.append("\\b");
-					break;
-				case '\t':
-					sb.append("\\t");
-					break;
-				case '\n':
-					sb.append("\\n");
-					break;
-				case '\f':
-					sb.append("\\f");
-					break;
-				case '\r':
-					sb.append("\\r");
-					break;
-				default:
-					if(c <= '\u001F' || (c >= '\u007F' && c <= '\u009F') || (c >= '\u2000' && c <= '\u20FF')) {
-						String ss = Integer.toHexString(c);
-						sb.append("\\u");
-						for(int k = 0; k < 4-ss.length(); k++) {
-							sb.append('0');
-						}
-						sb.append(ss.toUpperCase());
-					} else {
-						sb.append(c);
-					}
+		int cleanStart = start;
+		for(int i = start; i < end; i++) {
+			char c = chars[i];
+			char escape;
+			if(c < ESCAPE_TABLE_SIZE) {
+				escape = escapes[c];
+				if(escape == 0) {
+					continue;
+				}
+			} else if(!compactEscaping && (c <= '\u009F' || (c >= '\u2000' && c <= '\u20FF'))) {
+				escape = 'u';
+			} else {
+				continue;
+			}
+
+			sb.append(chars, cleanStart, i-cleanStart);
+			sb.append('\\');
+			sb.append(escape);
+			if(escape == 'u') {
+				sb.append(HEX_DIGITS[(c >> 12) & 0xF]);
+				sb.append(HEX_DIGITS[(c >> 8) & 0xF]);
+				sb.append(HEX_DIGITS[(c >> 4) & 0xF]);
+				sb.append(HEX_DIGITS[c & 0xF]);
 			}
+			cleanStart = i+1;
 		}
+		sb.append(chars, cleanStart, end-cleanStart);
 		sb.append('"');
 		return sb;
 	}
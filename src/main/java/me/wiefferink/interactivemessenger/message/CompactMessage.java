@@ -0,0 +1,364 @@
+package me.wiefferink.interactivemessenger.message;
+
+import me.wiefferink.interactivemessenger.message.enums.Click;
+import me.wiefferink.interactivemessenger.message.enums.Hover;
+
+import java.util.Arrays;
+
+/**
+ * Compact and immutable representation of an InteractiveMessage
+ * <p>
+ * Text of all parts is stored in one shared character buffer, each text run is a range in that buffer with a style id.
+ * Each part refers to a range of text runs and a range of hover runs, interactive properties are stored in arrays indexed by part.
+ */
+public class CompactMessage {
+
+	// Text of all runs
+	private final char[] text;
+	// Run i covers text[runOffsets[i], runOffsets[i+1])
+	private final int[] runOffsets;
+	private final int[] runStyles;
+
+	// Text runs of part p are [partRuns[2p], partRuns[2p+1]), hover runs are [partRuns[2p+1], partRuns[2p+2])
+	private final int[] partRuns;
+	private final boolean[] partNewlines;
+	// Null if the message has no interactive parts
+	private final Click[] partClicks;
+	private final String[] partClickContents;
+	private final Hover[] partHovers;
+
+	/**
+	 * Constructor
+	 */
+	private CompactMessage(char[] text, int[] runOffsets, int[] runStyles, int[] partRuns, boolean[] partNewlines, Click[] partClicks, String[] partClickContents, Hover[] partHovers) {
+		this.text = text;
+		this.runOffsets = runOffsets;
+		this.runStyles = runStyles;
+		this.partRuns = partRuns;
+		this.partNewlines = partNewlines;
+		this.partClicks = partClicks;
+		this.partClickContents = partClickContents;
+		this.partHovers = partHovers;
+	}
+
+	/**
+	 * Create a compact version of an InteractiveMessage
+	 * @param message The message to convert
+	 * @return The compact message
+	 */
+	public static CompactMessage from(InteractiveMessage message) {
+		Builder builder = new Builder();
+		message.accept(builder);
+		return builder.build();
+	}
+
+	/**
+	 * Convert back to an InteractiveMessage
+	 * @return InteractiveMessage with the same content as this message
+	 */
+	public InteractiveMessage toInteractiveMessage() {
+		InteractiveMessage.Builder builder = new InteractiveMessage.Builder();
+		accept(builder);
+		return builder.build();
+	}
+
+	/**
+	 * Send the content of this message to a visitor
+	 * @param visitor The visitor to send the parts to
+	 */
+	public void accept(MessageVisitor visitor) {
+		for(int part = 0; part < getPartCount(); part++) {
+			visitor.startPart();
+			for(int run = getTextRunStart(part); run < getTextRunEnd(part); run++) {
+				visitor.text(getRunStyle(run), text, runOffsets[run], runOffsets[run+1]);
+			}
+			if(getClick(part) != null) {
+				visitor.click(getClick(part), getClickContent(part));
+			}
+			if(getHover(part) != null) {
+				visitor.hover(getHover(part));
+				for(int run = getHoverRunStart(part); run < getHoverRunEnd(part); run++) {
+					visitor.text(getRunStyle(run), text, runOffsets[run], runOffsets[run+1]);
+				}
+			}
+			if(hasNewline(part)) {
+				visitor.newline();
+			}
+			visitor.endPart();
+		}
+	}
+
+	// PARTS
+
+	/**
+	 * Get the number of parts
+	 * @return The number of parts
+	 */
+	public int getPartCount() {
+		return partNewlines.length;
+	}
+
+	/**
+	 * Check if a part should be followed by a new line
+	 * @param part The part to check
+	 * @return true if the next part should start on a new line, otherwise false
+	 */
+	public boolean hasNewline(int part) {
+		return partNewlines[part];
+	}
+
+	/**
+	 * Get the click action of a part
+	 * @param part The part to get it for
+	 * @return The click action or null for none
+	 */
+	public Click getClick(int part) {
+		return partClicks == null ? null : partClicks[part];
+	}
+
+	/**
+	 * Get the click content of a part
+	 * @param part The part to get it for
+	 * @return The click content, or null if there is no click action
+	 */
+	public String getClickContent(int part) {
+		return partClickContents == null ? null : partClickContents[part];
+	}
+
+	/**
+	 * Get the hover action of a part
+	 * @param part The part to get it for
+	 * @return The hover action or null for none
+	 */
+	public Hover getHover(int part) {
+		return partHovers == null ? null : partHovers[part];
+	}
+
+	/**
+	 * Check if a part has interactive actions
+	 * @param part The part to check
+	 * @return true if there is a hover or click action, false if it is only text
+	 */
+	public boolean isInteractive(int part) {
+		return getClick(part) != null || getHover(part) != null;
+	}
+
+	/**
+	 * Get the first text run of a part
+	 * @param part The part to get it for
+	 * @return Index of the first text run
+	 */
+	public int getTextRunStart(int part) {
+		return partRuns[part*2];
+	}
+
+	/**
+	 * Get the end of the text runs of a part
+	 * @param part The part to get it for
+	 * @return Index after the last text run
+	 */
+	public int getTextRunEnd(int part) {
+		return partRuns[part*2+1];
+	}
+
+	/**
+	 * Get the first hover run of a part
+	 * @param part The part to get it for
+	 * @return Index of the first hover run
+	 */
+	public int getHoverRunStart(int part) {
+		return partRuns[part*2+1];
+	}
+
+	/**
+	 * Get the end of the hover runs of a part
+	 * @param part The part to get it for
+	 * @return Index after the last hover run
+	 */
+	public int getHoverRunEnd(int part) {
+		return partRuns[part*2+2];
+	}
+
+	// RUNS
+
+	/**
+	 * Get the style of a run
+	 * @param run The run to get it for
+	 * @return The style
+	 */
+	public Style getRunStyle(int run) {
+		return Style.of(runStyles[run]);
+	}
+
+	/**
+	 * Get the start of the text of a run in the text buffer
+	 * @param run The run to get it for
+	 * @return Index of the first character of the run
+	 */
+	public int getRunTextStart(int run) {
+		return runOffsets[run];
+	}
+
+	/**
+	 * Get the end of the text of a run in the text buffer
+	 * @param run The run to get it for
+	 * @return Index after the last character of the run
+	 */
+	public int getRunTextEnd(int run) {
+		return runOffsets[run+1];
+	}
+
+	/**
+	 * Get the text of a run
+	 * @param run The run to get it for
+	 * @return The text of the run
+	 */
+	public String getRunText(int run) {
+		return new String(text, runOffsets[run], runOffsets[run+1]-runOffsets[run]);
+	}
+
+	/**
+	 * Get the buffer with the text of all runs
+	 * @return The text buffer, should not be modified
+	 */
+	public char[] getTextBuffer() {
+		return text;
+	}
+
+	/**
+	 * Get the total length of the text of all runs
+	 * @return The number of characters in the text buffer
+	 */
+	public int getTextLength() {
+		return text.length;
+	}
+
+	@Override
+	public String toString() {
+		return "CompactMessage(parts:"+getPartCount()+", runs:"+runStyles.length+", text:"+new String(text)+")";
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if(o == this) {
+			return true;
+		}
+		if(!(o instanceof CompactMessage)) {
+			return false;
+		}
+		CompactMessage message = (CompactMessage)o;
+		return Arrays.equals(text, message.text) &&
+				Arrays.equals(runOffsets, message.runOffsets) &&
+				Arrays.equals(runStyles, message.runStyles) &&
+				Arrays.equals(partRuns, message.partRuns) &&
+				Arrays.equals(partNewlines, message.partNewlines) &&
+				Arrays.equals(partClicks, message.partClicks) &&
+				Arrays.equals(partClickContents, message.partClickContents) &&
+				Arrays.equals(partHovers, message.partHovers);
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(text)*31+Arrays.hashCode(runStyles);
+	}
+
+	/**
+	 * Collects the events of a MessageVisitor into a CompactMessage
+	 */
+	public static class Builder implements MessageVisitor {
+
+		private char[] text = new char[64];
+		private int textLength = 0;
+		private int[] runOffsets = new int[9];
+		private int[] runStyles = new int[8];
+		private int runCount = 0;
+
+		private int[] partRuns = new int[9];
+		private boolean[] partNewlines = new boolean[4];
+		private Click[] partClicks = new Click[4];
+		private String[] partClickContents = new String[4];
+		private Hover[] partHovers = new Hover[4];
+		private int partCount = 0;
+		private boolean interactive = false;
+		private boolean inHover = false;
+
+		@Override
+		public void startPart() {
+			if(partCount == partNewlines.length) {
+				int size = partCount*2;
+				partRuns = Arrays.copyOf(partRuns, size*2+1);
+				partNewlines = Arrays.copyOf(partNewlines, size);
+				partClicks = Arrays.copyOf(partClicks, size);
+				partClickContents = Arrays.copyOf(partClickContents, size);
+				partHovers = Arrays.copyOf(partHovers, size);
+			}
+			partRuns[partCount*2] = runCount;
+			inHover = false;
+		}
+
+		@Override
+		public void text(Style style, char[] chars, int start, int end) {
+			int length = end-start;
+			if(textLength+length > text.length) {
+				text = Arrays.copyOf(text, Math.max(text.length*2, textLength+length));
+			}
+			System.arraycopy(chars, start, text, textLength, length);
+			if(runCount == runStyles.length) {
+				runStyles = Arrays.copyOf(runStyles, runCount*2);
+				runOffsets = Arrays.copyOf(runOffsets, runCount*2+1);
+			}
+			runOffsets[runCount] = textLength;
+			runStyles[runCount] = style.getId();
+			runCount++;
+			textLength += length;
+		}
+
+		@Override
+		public void click(Click click, String content) {
+			partClicks[partCount] = click;
+			partClickContents[partCount] = content;
+			interactive = true;
+		}
+
+		@Override
+		public void hover(Hover hover) {
+			partRuns[partCount*2+1] = runCount;
+			partHovers[partCount] = hover;
+			interactive = true;
+			inHover = true;
+		}
+
+		@Override
+		public void newline() {
+			partNewlines[partCount] = true;
+		}
+
+		@Override
+		public void endPart() {
+			if(!inHover) {
+				partRuns[partCount*2+1] = runCount;
+			}
+			partCount++;
+			partRuns[partCount*2] = runCount;
+		}
+
+		/**
+		 * Create the message from the collected parts
+		 * @return The compact message
+		 */
+		public CompactMessage build() {
+			runOffsets[runCount] = textLength;
+			return new CompactMessage(
+					Arrays.copyOf(text, textLength),
+					Arrays.copyOf(runOffsets, runCount+1),
+					Arrays.copyOf(runStyles, runCount),
+					Arrays.copyOf(partRuns, partCount*2+1),
+					Arrays.copyOf(partNewlines, partCount),
+					interactive ? Arrays.copyOf(partClicks, partCount) : null,
+					interactive ? Arrays.copyOf(partClickContents, partCount) : null,
+					interactive ? Arrays.copyOf(partHovers, partCount) : null
+			);
+		}
+	}
+
+}
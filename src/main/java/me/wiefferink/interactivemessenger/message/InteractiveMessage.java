@@ -1,7 +1,11 @@
 package me.wiefferink.interactivemessenger.message;
 
+import me.wiefferink.interactivemessenger.message.enums.Click;
+import me.wiefferink.interactivemessenger.message.enums.Hover;
+
 import java.util.Collection;
 import java.util.LinkedList;
+import java.util.List;
 
 /**
  * Interactive message
@@ -20,4 +24,93 @@ public class InteractiveMessage extends LinkedList<InteractiveMessagePart> {
 		return new InteractiveMessage(this);
 	}
 
+	/**
+	 * Send the content of this message to a visitor
+	 * @param visitor The visitor to send the parts to
+	 */
+	public void accept(MessageVisitor visitor) {
+		for(InteractiveMessagePart part : this) {
+			visitor.startPart();
+			for(TextMessagePart textPart : part) {
+				text(textPart, visitor);
+			}
+			if(part.getOnClick() != null) {
+				visitor.click(part.getOnClick(), part.getOnClickContent());
+			}
+			if(part.getOnHover() != null) {
+				visitor.hover(part.getOnHover());
+				for(TextMessagePart textPart : part.getOnHoverContent()) {
+					text(textPart, visitor);
+				}
+			}
+			if(part.hasNewline()) {
+				visitor.newline();
+			}
+			visitor.endPart();
+		}
+	}
+
+	/**
+	 * Send a text part to a visitor
+	 * @param textPart The part to send
+	 * @param visitor  The visitor to send it to
+	 */
+	private static void text(TextMessagePart textPart, MessageVisitor visitor) {
+		String text = textPart.getText();
+		visitor.text(textPart.getStyle(), text.toCharArray(), 0, text.length());
+	}
+
+	/**
+	 * Collects the events of a MessageVisitor into an InteractiveMessage
+	 */
+	public static class Builder implements MessageVisitor {
+
+		private final InteractiveMessage message = new InteractiveMessage();
+		private InteractiveMessagePart part;
+		private List<TextMessagePart> target;
+
+		@Override
+		public void startPart() {
+			part = new InteractiveMessagePart();
+			target = part;
+		}
+
+		@Override
+		public void text(Style style, char[] chars, int start, int end) {
+			target.add(new TextMessagePart()
+					.text(new String(chars, start, end-start))
+					.style(style));
+		}
+
+		@Override
+		public void click(Click click, String content) {
+			part.onClick(click);
+			part.onClickContent(content);
+		}
+
+		@Override
+		public void hover(Hover hover) {
+			part.onHover(hover);
+			target = part.getOnHoverContent();
+		}
+
+		@Override
+		public void newline() {
+			part.newline();
+		}
+
+		@Override
+		public void endPart() {
+			message.add(part);
+		}
+
+		/**
+		 * Get the message with the collected parts
+		 * @return The message
+		 */
+		public InteractiveMessage build() {
+			return message;
+		}
+	}
+
 }
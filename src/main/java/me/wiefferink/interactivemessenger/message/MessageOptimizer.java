@@ -0,0 +1,164 @@
+package me.wiefferink.interactivemessenger.message;
+
+import me.wiefferink.interactivemessenger.message.enums.Click;
+import me.wiefferink.interactivemessenger.message.enums.Hover;
+
+import java.util.Objects;
+
+/**
+ * Passes the parts of a message on to another visitor with as few parts and runs as possible, without changing how the message looks
+ * <ul>
+ * <li>Adjacent text with the same style is combined into one run</li>
+ * <li>Adjacent parts on the same line with the same click and hover are combined into one part</li>
+ * <li>Empty text, hovers without content and parts without text are dropped (line breaks are kept)</li>
+ * </ul>
+ * Parts are held back until it is known if the next part can be combined with them, call {@link #finish()} after the last part.
+ */
+public class MessageOptimizer implements MessageVisitor {
+
+	private final MessageVisitor target;
+
+	// Part that has been visited but not passed on yet, the next part might be combined with it
+	private RunBuffer pendingText = new RunBuffer();
+	private RunBuffer pendingHoverText = new RunBuffer();
+	private Click pendingClick;
+	private String pendingClickContent;
+	private Hover pendingHover;
+	private boolean pendingNewline;
+	private boolean hasPending = false;
+
+	// Part that is currently visited
+	private RunBuffer text = new RunBuffer();
+	private RunBuffer hoverText = new RunBuffer();
+	private Click click;
+	private String clickContent;
+	private Hover hover;
+	private boolean newline;
+
+	/**
+	 * Constructor
+	 * @param target The visitor to pass the optimized parts to
+	 */
+	public MessageOptimizer(MessageVisitor target) {
+		this.target = target;
+	}
+
+	/**
+	 * Get an optimized copy of a message
+	 * @param message The message to optimize
+	 * @return Message that looks the same, with as few parts and runs as possible
+	 */
+	public static InteractiveMessage optimize(InteractiveMessage message) {
+		InteractiveMessage.Builder builder = new InteractiveMessage.Builder();
+		MessageOptimizer optimizer = new MessageOptimizer(builder);
+		message.accept(optimizer);
+		optimizer.finish();
+		return builder.build();
+	}
+
+	/**
+	 * Pass on the part that is held back, should be called after the last part of the message
+	 */
+	public void finish() {
+		if(!hasPending) {
+			return;
+		}
+		target.startPart();
+		pendingText.sendTo(target);
+		if(pendingClick != null) {
+			target.click(pendingClick, pendingClickContent);
+		}
+		if(pendingHover != null) {
+			target.hover(pendingHover);
+			pendingHoverText.sendTo(target);
+		}
+		if(pendingNewline) {
+			target.newline();
+		}
+		target.endPart();
+		hasPending = false;
+	}
+
+	@Override
+	public void startPart() {
+		text.clear();
+		hoverText.clear();
+		click = null;
+		clickContent = null;
+		hover = null;
+		newline = false;
+	}
+
+	@Override
+	public void text(Style style, char[] chars, int start, int end) {
+		if(hover == null) {
+			text.add(style, chars, start, end);
+		} else {
+			hoverText.add(style, chars, start, end);
+		}
+	}
+
+	@Override
+	public void click(Click click, String content) {
+		this.click = click;
+		this.clickContent = content;
+	}
+
+	@Override
+	public void hover(Hover hover) {
+		this.hover = hover;
+	}
+
+	@Override
+	public void newline() {
+		newline = true;
+	}
+
+	@Override
+	public void endPart() {
+		// A hover without content is not shown
+		if(hoverText.isEmpty()) {
+			hover = null;
+		}
+
+		if(text.isEmpty()) {
+			// Nothing to show, only the line break is important
+			if(!newline) {
+				return;
+			}
+			if(hasPending && !pendingNewline) {
+				pendingNewline = true;
+				return;
+			}
+			click = null;
+			hover = null;
+			hoverText.clear();
+		} else if(hasPending
+				&& !pendingNewline
+				&& pendingClick == click
+				&& Objects.equals(pendingClickContent, clickContent)
+				&& pendingHover == hover
+				&& pendingHoverText.contentEquals(hoverText)) {
+			// Same line and same interactivity as the part before it
+			pendingText.addAll(text);
+			pendingNewline = newline;
+			return;
+		}
+
+		finish();
+
+		// Hold back the current part, swap buffers to reuse them
+		RunBuffer oldText = pendingText;
+		pendingText = text;
+		text = oldText;
+		RunBuffer oldHoverText = pendingHoverText;
+		pendingHoverText = hoverText;
+		hoverText = oldHoverText;
+		pendingClick = click;
+		pendingClickContent = clickContent;
+		pendingHover = hover;
+		pendingNewline = newline;
+		hasPending = true;
+	}
+
+}
@@ -0,0 +1,57 @@
+package me.wiefferink.interactivemessenger.message;
+
+import me.wiefferink.interactivemessenger.message.enums.Click;
+import me.wiefferink.interactivemessenger.message.enums.Hover;
+
+/**
+ * Receives the content of a message as a stream of events, without an intermediate message structure
+ * <p>
+ * Events of a part are always called in this order:
+ * <ul>
+ * <li>startPart()</li>
+ * <li>text(...) for each piece of text of the part</li>
+ * <li>click(...) if the part has a click action</li>
+ * <li>hover(...) if the part has a hover action, followed by text(...) for each piece of the hover content</li>
+ * <li>newline() if the next part should start on a new line</li>
+ * <li>endPart()</li>
+ * </ul>
+ */
+public interface MessageVisitor {
+
+	/**
+	 * Start of a new part
+	 */
+	void startPart();
+
+	/**
+	 * Text of the current part, or of the hover content if hover() has been called for this part
+	 * @param style The style of the text
+	 * @param chars Buffer containing the text, only valid during this call
+	 * @param start Index of the first character of the text
+	 * @param end   Index after the last character of the text
+	 */
+	void text(Style style, char[] chars, int start, int end);
+
+	/**
+	 * Click action of the current part
+	 * @param click   The click action
+	 * @param content The content of the click action
+	 */
+	void click(Click click, String content);
+
+	/**
+	 * Hover action of the current part, text after this is the hover content
+	 * @param hover The hover action
+	 */
+	void hover(Hover hover);
+
+	/**
+	 * The next part should start on a new line
+	 */
+	void newline();
+
+	/**
+	 * End of the current part
+	 */
+	void endPart();
+}
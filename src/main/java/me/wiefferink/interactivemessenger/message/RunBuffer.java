@@ -0,0 +1,165 @@
+package me.wiefferink.interactivemessenger.message;
+
+import java.util.Arrays;
+
+/**
+ * Growing buffer of text runs, each run is a piece of text with a style
+ * Adjacent text with the same style is combined into one run and empty text is skipped.
+ * The buffers are kept when clearing, so an instance can be reused without allocating.
+ */
+public class RunBuffer {
+
+	private char[] chars = new char[64];
+	private int length = 0;
+	// Run i covers chars[ends[i-1], ends[i])
+	private int[] ends = new int[8];
+	private Style[] styles = new Style[8];
+	private int count = 0;
+
+	/**
+	 * Remove all runs
+	 */
+	public void clear() {
+		length = 0;
+		count = 0;
+	}
+
+	/**
+	 * Remove all runs and drop buffers that are bigger than a limit, to free the memory used for a large text
+	 * @param maximum The maximum number of characters or runs to keep buffers for
+	 */
+	public void shrink(int maximum) {
+		clear();
+		if(chars.length > maximum) {
+			chars = new char[64];
+		}
+		if(ends.length > maximum) {
+			ends = new int[8];
+			styles = new Style[8];
+		}
+	}
+
+	/**
+	 * Check if there are runs
+	 * @return true if there are no runs, otherwise false
+	 */
+	public boolean isEmpty() {
+		return count == 0;
+	}
+
+	/**
+	 * Get the number of runs
+	 * @return The number of runs
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * Add text, appended to the last run if it has the same style
+	 * @param style The style of the text
+	 * @param text  Buffer containing the text
+	 * @param start Index of the first character of the text
+	 * @param end   Index after the last character of the text
+	 */
+	public void add(Style style, char[] text, int start, int end) {
+		int textLength = end-start;
+		if(textLength <= 0) {
+			return;
+		}
+		if(length+textLength > chars.length) {
+			chars = Arrays.copyOf(chars, Math.max(chars.length*2, length+textLength));
+		}
+		System.arraycopy(text, start, chars, length, textLength);
+		length += textLength;
+		if(count > 0 && styles[count-1] == style) {
+			ends[count-1] = length;
+			return;
+		}
+		if(count == ends.length) {
+			ends = Arrays.copyOf(ends, count*2);
+			styles = Arrays.copyOf(styles, count*2);
+		}
+		ends[count] = length;
+		styles[count] = style;
+		count++;
+	}
+
+	/**
+	 * Add all runs of another buffer
+	 * @param other The buffer to add the runs of
+	 */
+	public void addAll(RunBuffer other) {
+		for(int run = 0; run < other.count; run++) {
+			add(other.styles[run], other.chars, other.getStart(run), other.ends[run]);
+		}
+	}
+
+	/**
+	 * Get the style of a run
+	 * @param run The run to get it for
+	 * @return The style of the run
+	 */
+	public Style getStyle(int run) {
+		return styles[run];
+	}
+
+	/**
+	 * Get the start of the text of a run
+	 * @param run The run to get it for
+	 * @return Index of the first character of the run in {@link #getChars()}
+	 */
+	public int getStart(int run) {
+		return run == 0 ? 0 : ends[run-1];
+	}
+
+	/**
+	 * Get the end of the text of a run
+	 * @param run The run to get it for
+	 * @return Index after the last character of the run in {@link #getChars()}
+	 */
+	public int getEnd(int run) {
+		return ends[run];
+	}
+
+	/**
+	 * Get the buffer with the text of all runs
+	 * @return The text buffer, only valid until the next change and should not be modified
+	 */
+	public char[] getChars() {
+		return chars;
+	}
+
+	/**
+	 * Send all runs to a visitor as text
+	 * @param visitor The visitor to send the runs to
+	 */
+	public void sendTo(MessageVisitor visitor) {
+		for(int run = 0; run < count; run++) {
+			visitor.text(styles[run], chars, getStart(run), ends[run]);
+		}
+	}
+
+	/**
+	 * Check if another buffer has the same runs
+	 * @param other The buffer to compare with
+	 * @return true if both buffers have the same text with the same styles, otherwise false
+	 */
+	public boolean contentEquals(RunBuffer other) {
+		if(count != other.count || length != other.length) {
+			return false;
+		}
+		for(int run = 0; run < count; run++) {
+			if(styles[run] != other.styles[run] || ends[run] != other.ends[run]) {
+				return false;
+			}
+		}
+		for(int i = 0; i < length; i++) {
+			if(chars[i] != other.chars[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+}
@@ -0,0 +1,216 @@
+package me.wiefferink.interactivemessenger.message;
+
+import me.wiefferink.interactivemessenger.message.enums.Color;
+import me.wiefferink.interactivemessenger.message.enums.Format;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Combination of a color and formatting
+ * <p>
+ * All possible styles are created up front and shared, get them with {@link #of(Color, Collection)} or the with/without methods.
+ * Because every combination has exactly one instance, styles can be compared with ==.
+ */
+public final class Style {
+
+	private static final Color[] COLORS = Color.values();
+	private static final Format[] FORMATS = Format.values();
+
+	// Id of a style: color ordinal in the lowest bits, bitmask of formats (by ordinal) above it
+	private static final int COLOR_BITS = 4;
+	private static final int COLOR_MASK = (1 << COLOR_BITS)-1;
+
+	/**
+	 * Number of different styles, ids are in the range [0, COUNT)
+	 */
+	public static final int COUNT = 1 << (COLOR_BITS+FORMATS.length);
+
+	private static final Style[] STYLES = new Style[COUNT];
+	static {
+		for(int id = 0; id < COUNT; id++) {
+			STYLES[id] = new Style(id);
+		}
+	}
+
+	/**
+	 * White without formatting
+	 */
+	public static final Style PLAIN = STYLES[0];
+
+	private final int id;
+	private final Color color;
+	private final int formats;
+	private final Set<Format> formatting;
+
+	/**
+	 * Constructor
+	 * @param id The id of the style
+	 */
+	private Style(int id) {
+		this.id = id;
+		this.color = COLORS[id & COLOR_MASK];
+		this.formats = id >>> COLOR_BITS;
+		Set<Format> formatSet = EnumSet.noneOf(Format.class);
+		for(Format format : FORMATS) {
+			if((formats & (1 << format.ordinal())) != 0) {
+				formatSet.add(format);
+			}
+		}
+		this.formatting = Collections.unmodifiableSet(formatSet);
+	}
+
+	/**
+	 * Get a style by its id
+	 * @param id The id of the style
+	 * @return The style with the given id
+	 */
+	public static Style of(int id) {
+		return STYLES[id];
+	}
+
+	/**
+	 * Get a style
+	 * @param color      The color of the style (null for white)
+	 * @param formatting The formatting of the style (null for none)
+	 * @return The style with the given color and formatting
+	 */
+	public static Style of(Color color, Collection<Format> formatting) {
+		return PLAIN.withColor(color).withFormatting(formatting);
+	}
+
+	/**
+	 * Get a style
+	 * @param color   The color of the style (null for white)
+	 * @param formats Bitmask of the formats of the style, bit i is set when the format with ordinal i is active
+	 * @return The style with the given color and formatting
+	 */
+	public static Style of(Color color, int formats) {
+		return PLAIN.withColor(color).withFormats(formats);
+	}
+
+	/**
+	 * Get the style with the color changed
+	 * @param color The color to use (null for white)
+	 * @return The style with the given color and the formatting of this style
+	 */
+	public Style withColor(Color color) {
+		if(color == null) {
+			color = Color.WHITE;
+		}
+		return STYLES[(id & ~COLOR_MASK) | color.ordinal()];
+	}
+
+	/**
+	 * Get the style with a format added
+	 * @param format The format to add
+	 * @return The style with the format added
+	 */
+	public Style withFormat(Format format) {
+		return STYLES[id | (1 << (format.ordinal()+COLOR_BITS))];
+	}
+
+	/**
+	 * Get the style with formatting added
+	 * @param formatting The formatting to add (null is ignored)
+	 * @return The style with the formatting added
+	 */
+	public Style withFormatting(Collection<Format> formatting) {
+		if(formatting == null) {
+			return this;
+		}
+		int result = id;
+		for(Format format : formatting) {
+			result |= 1 << (format.ordinal()+COLOR_BITS);
+		}
+		return STYLES[result];
+	}
+
+	/**
+	 * Get the style with formatting added
+	 * @param formats Bitmask of the formats to add, bit i is set when the format with ordinal i should be added
+	 * @return The style with the formatting added
+	 */
+	public Style withFormats(int formats) {
+		return STYLES[id | ((formats << COLOR_BITS) & (COUNT-1))];
+	}
+
+	/**
+	 * Get the style with a format removed
+	 * @param format The format to remove
+	 * @return The style without the format
+	 */
+	public Style withoutFormat(Format format) {
+		return STYLES[id & ~(1 << (format.ordinal()+COLOR_BITS))];
+	}
+
+	/**
+	 * Get the style with all formatting removed
+	 * @return The style with only the color of this style
+	 */
+	public Style withoutFormatting() {
+		return STYLES[id & COLOR_MASK];
+	}
+
+	/**
+	 * Get the id of this style
+	 * @return The id, in the range [0, COUNT)
+	 */
+	public int getId() {
+		return id;
+	}
+
+	/**
+	 * Get the color
+	 * @return The color, never null
+	 */
+	public Color getColor() {
+		return color;
+	}
+
+	/**
+	 * Get the formatting as bitmask
+	 * @return The formats of this style, bit i is set when the format with ordinal i is active
+	 */
+	public int getFormats() {
+		return formats;
+	}
+
+	/**
+	 * Get the formatting
+	 * @return The formatting of this style, cannot be modified
+	 */
+	public Set<Format> getFormatting() {
+		return formatting;
+	}
+
+	/**
+	 * Check if this style has a format
+	 * @param format The format to check
+	 * @return true if the format is active, otherwise false
+	 */
+	public boolean hasFormat(Format format) {
+		return (formats & (1 << format.ordinal())) != 0;
+	}
+
+	/**
+	 * Check if this style is white without formatting
+	 * @return true if this is the plain style, otherwise false
+	 */
+	public boolean isPlain() {
+		return id == 0;
+	}
+
+	@Override
+	public String toString() {
+		return "Style(color:"+color+", formatting:"+formatting+")";
+	}
+
+	@Override
+	public int hashCode() {
+		return id;
+	}
+
+}
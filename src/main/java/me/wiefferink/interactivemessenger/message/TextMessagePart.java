@@ -10,8 +10,7 @@ import java.util.*;
  */
 public class TextMessagePart {
 	private String text = "";
-	private Color color = Color.WHITE;
-	private Set<Format> formatting = EnumSet.noneOf(Format.class);
+	private Style style = Style.PLAIN;
 
 	/**
 	 * Set the text
@@ -52,10 +51,7 @@ public class TextMessagePart {
 	 * @return this
 	 */
 	public TextMessagePart color(Color color) {
-		if(color == null) {
-			color = Color.WHITE;
-		}
-		this.color = color;
+		style = style.withColor(color);
 		return this;
 	}
 
@@ -64,7 +60,7 @@ public class TextMessagePart {
 	 * @return The color, never null
 	 */
 	public Color getColor() {
-		return color;
+		return style.getColor();
 	}
 
 	/**
@@ -74,7 +70,9 @@ public class TextMessagePart {
 	 */
 	public TextMessagePart format(Format... formatting) {
 		if(formatting != null) {
-			this.formatting.addAll(Arrays.asList(formatting));
+			for(Format format : formatting) {
+				style = style.withFormat(format);
+			}
 		}
 		return this;
 	}
@@ -85,18 +83,42 @@ public class TextMessagePart {
 	 * @return this
 	 */
 	public TextMessagePart format(Collection<Format> formatting) {
-		if(formatting != null) {
-			this.formatting.addAll(formatting);
-		}
+		style = style.withFormatting(formatting);
 		return this;
 	}
 
 	/**
 	 * Get the formatting of this part
-	 * @return The formattting of this part, never null
+	 * @return A copy of the formatting of this part, never null, changing it does not change this part
+	 * @deprecated Parts share their formatting through their style, use {@link #getStyle()} to read it and
+	 * {@link #format(Format...)} or {@link #style(Style)} with for example getStyle().withoutFormat(format) to change it
 	 */
+	@Deprecated
 	public Set<Format> getFormatting() {
-		return formatting;
+		Set<Format> result = EnumSet.noneOf(Format.class);
+		result.addAll(style.getFormatting());
+		return result;
+	}
+
+	/**
+	 * Set the style, replacing the current color and formatting
+	 * @param style The style to set (if null it defaults to white without formatting)
+	 * @return this
+	 */
+	public TextMessagePart style(Style style) {
+		if(style == null) {
+			style = Style.PLAIN;
+		}
+		this.style = style;
+		return this;
+	}
+
+	/**
+	 * Get the style
+	 * @return The style, never null
+	 */
+	public Style getStyle() {
+		return style;
 	}
 
 	/**
@@ -104,17 +126,17 @@ public class TextMessagePart {
 	 * @return true if this part has formatting, otherwise false
 	 */
 	public boolean hasFormatting() {
-		return !(color == Color.WHITE && formatting.isEmpty());
+		return !style.isPlain();
 	}
 
 	@Override
 	public String toString() {
 		StringBuilder result = new StringBuilder("TextMessagePart(text:"+text);
-		if(color != Color.WHITE) {
-			result.append(", color:").append(color);
+		if(style.getColor() != Color.WHITE) {
+			result.append(", color:").append(style.getColor());
 		}
-		if(!formatting.isEmpty()) {
-			result.append(", formatting:").append(formatting);
+		if(style.getFormats() != 0) {
+			result.append(", formatting:").append(style.getFormatting());
 		}
 		result.append(")");
 		return result.toString();
@@ -130,13 +152,12 @@ public class TextMessagePart {
 		}
 		TextMessagePart part = (TextMessagePart)o;
 		return Objects.equals(text, part.text) &&
-				color == part.color &&
-				Objects.equals(formatting, part.formatting);
+				style == part.style;
 	}
 
 	@Override
 	public int hashCode() {
-		return Objects.hash(text, color, formatting);
+		return Objects.hash(text, style);
 	}
 
 }
@@ -0,0 +1,112 @@
+package me.wiefferink.interactivemessenger.parsers;
+
+import me.wiefferink.interactivemessenger.message.CompactMessage;
+import me.wiefferink.interactivemessenger.message.MessageOptimizer;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cache for the result of parsing message lines, the same lines are only parsed once
+ * Parsed messages are kept as immutable CompactMessage, which are shared between all users of the cache
+ * Cached messages are optimized with MessageOptimizer, so the work of combining parts is also only done once
+ */
+public class ParseCache {
+
+	// Maximum number of parsed messages to keep around
+	private static int maximumSize = 1000;
+
+	private static long hits = 0;
+	private static long misses = 0;
+
+	// Least recently used messages are evicted first
+	private static final Map<List<String>, CompactMessage> cache = new LinkedHashMap<List<String>, CompactMessage>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<List<String>, CompactMessage> eldest) {
+			return size() > maximumSize;
+		}
+	};
+
+	/**
+	 * Get the parsed version of the given lines, from the cache if possible
+	 * @param input The lines to parse
+	 * @return CompactMessage representing the parsed input
+	 */
+	public static CompactMessage parse(List<String> input) {
+		CompactMessage result;
+		synchronized(cache) {
+			result = cache.get(input);
+			if(result != null) {
+				hits++;
+				return result;
+			}
+			misses++;
+		}
+
+		CompactMessage.Builder builder = new CompactMessage.Builder();
+		MessageOptimizer optimizer = new MessageOptimizer(builder);
+		YamlParser.parse(input, optimizer);
+		optimizer.finish();
+		result = builder.build();
+		synchronized(cache) {
+			cache.put(new ArrayList<>(input), result);
+		}
+		return result;
+	}
+
+	/**
+	 * Set the maximum number of parsed messages to keep
+	 * @param size The maximum size of the cache, 0 to disable caching
+	 */
+	public static void setMaximumSize(int size) {
+		synchronized(cache) {
+			maximumSize = Math.max(0, size);
+			while(cache.size() > maximumSize) {
+				cache.remove(cache.keySet().iterator().next());
+			}
+		}
+	}
+
+	/**
+	 * Remove all parsed messages and reset the statistics
+	 */
+	public static void clear() {
+		synchronized(cache) {
+			cache.clear();
+			hits = 0;
+			misses = 0;
+		}
+	}
+
+	/**
+	 * Get the number of messages in the cache
+	 * @return The number of cached messages
+	 */
+	public static int size() {
+		synchronized(cache) {
+			return cache.size();
+		}
+	}
+
+	/**
+	 * Get the number of times a parsed message could be taken from the cache
+	 * @return The number of cache hits
+	 */
+	public static long getHits() {
+		synchronized(cache) {
+			return hits;
+		}
+	}
+
+	/**
+	 * Get the number of times lines had to be parsed
+	 * @return The number of cache misses
+	 */
+	public static long getMisses() {
+		synchronized(cache) {
+			return misses;
+		}
+	}
+}
@@ -2,8 +2,8 @@ package me.wiefferink.interactivemessenger.parsers;
 
 import me.wiefferink.interactivemessenger.generators.ConsoleGenerator;
 import me.wiefferink.interactivemessenger.message.InteractiveMessage;
-import me.wiefferink.interactivemessenger.message.InteractiveMessagePart;
-import me.wiefferink.interactivemessenger.message.TextMessagePart;
+import me.wiefferink.interactivemessenger.message.MessageVisitor;
+import me.wiefferink.interactivemessenger.message.Style;
 import me.wiefferink.interactivemessenger.message.enums.Click;
 import me.wiefferink.interactivemessenger.message.enums.Color;
 import me.wiefferink.interactivemessenger.message.enums.Control;
@@ -13,13 +13,8 @@ import org.bukkit.ChatColor;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.EnumSet;
 import java.util.HashMap;
-import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Set;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public class YamlParser {
@@ -29,7 +24,7 @@ public class YamlParser {
     public static final Pattern tagPattern = Pattern.compile("(\\[[/a-zA-Z1-9_]+?\\])|([&" + Pattern.quote(ChatColor.COLOR_CHAR + "") + "][0-9a-zA-Z])|(\\\\n)");
 
 	// Lookup table for all continuous enums ([<tag>])
-	private static final HashMap<String, Object> BRACKET_TAGS = new HashMap<String, Object>() {{
+	private static final TagTable BRACKET_TAGS = new TagTable() {{
 		// Colors
 		cacheTags(this, Color.class);
 		put("grey", Color.GRAY);
@@ -48,43 +43,43 @@ public class YamlParser {
 	}};
 
 	// Lookup table for all interactive enums (<tag>:)
-	private static final HashMap<String, Object> INTERACTIVE_TAGS = new HashMap<String, Object>() {{
+	private static final TagTable INTERACTIVE_TAGS = new TagTable() {{
 		cacheTags(this, Click.class);
 		cacheTags(this, Hover.class);
 	}};
 
 	// Lookup table for all native enums (&<tag> and §<tag>)
-	private static final HashMap<String, Object> NATIVE_TAGS = new HashMap<String, Object>() {{
-		put("0", Color.BLACK);
-		put("1", Color.DARK_BLUE);
-		put("2", Color.DARK_GREEN);
-		put("3", Color.DARK_AQUA);
-		put("4", Color.DARK_RED);
-		put("5", Color.DARK_PURPLE);
-		put("6", Color.GOLD);
-		put("7", Color.GRAY);
-		put("8", Color.DARK_GRAY);
-		put("9", Color.BLUE);
-		put("a", Color.GREEN);
-		put("b", Color.AQUA);
-		put("c", Color.RED);
-		put("d", Color.LIGHT_PURPLE);
-		put("e", Color.YELLOW);
-		put("f", Color.WHITE);
-
-		put("l", Format.BOLD);
-		put("m", Format.STRIKETHROUGH);
-		put("o", Format.ITALIC);
-		put("n", Format.UNDERLINE);
-		put("k", Format.OBFUSCATE);
-
-		put("r", Control.RESET);
+	private static final HashMap<Character, Object> NATIVE_TAGS = new HashMap<Character, Object>() {{
+		put('0', Color.BLACK);
+		put('1', Color.DARK_BLUE);
+		put('2', Color.DARK_GREEN);
+		put('3', Color.DARK_AQUA);
+		put('4', Color.DARK_RED);
+		put('5', Color.DARK_PURPLE);
+		put('6', Color.GOLD);
+		put('7', Color.GRAY);
+		put('8', Color.DARK_GRAY);
+		put('9', Color.BLUE);
+		put('a', Color.GREEN);
+		put('b', Color.AQUA);
+		put('c', Color.RED);
+		put('d', Color.LIGHT_PURPLE);
+		put('e', Color.YELLOW);
+		put('f', Color.WHITE);
+
+		put('l', Format.BOLD);
+		put('m', Format.STRIKETHROUGH);
+		put('o', Format.ITALIC);
+		put('n', Format.UNDERLINE);
+		put('k', Format.OBFUSCATE);
+
+		put('r', Control.RESET);
 	}};
 
 	/**
 	 * Puts all values of the given Enum into the given lookup table.
 	 */
-	private static <T extends Enum> void cacheTags(HashMap<String, Object> tagList, Class<T> tags) {
+	private static <T extends Enum> void cacheTags(TagTable tagList, Class<T> tags) {
 		for(Enum tag : tags.getEnumConstants()) {
 			tagList.put(tag.name().toLowerCase(), tag);
 			tagList.put(tag.name().toLowerCase().replace("_", ""), tag);
@@ -107,14 +102,36 @@ public class YamlParser {
 	 * @return InteractiveMessage representing the parsed input
 	 */
 	public static InteractiveMessage parse(List<String> input, boolean doInteractives) {
-		InteractiveMessage message = new InteractiveMessage();
+		InteractiveMessage.Builder builder = new InteractiveMessage.Builder();
+		parse(input, doInteractives, builder);
+		return builder.build();
+	}
+
+	/**
+	 * Parse input lines and send the result to a visitor, without building an InteractiveMessage
+	 * @param input   The input to parse
+	 * @param visitor The visitor to send the parsed parts to
+	 */
+	public static void parse(List<String> input, MessageVisitor visitor) {
+		parse(input, true, visitor);
+	}
 
-		Color currentColor = Color.WHITE;
-		Set<Format> currentFormatting = EnumSet.noneOf(Format.class);
+	/**
+	 * Parse input lines and send the result to a visitor, without building an InteractiveMessage
+	 * @param input          The input to parse
+	 * @param doInteractives true to parse interactive enums (hover, click, etc.), false to skip them
+	 * @param visitor        The visitor to send the parsed parts to
+	 */
+	public static void parse(List<String> input, boolean doInteractives, MessageVisitor visitor) {
+		// Interactive lines change the part of the text line above them, so a part is send when the next one starts
+		PendingPart messagePart = new PendingPart();
+
+		// Color and formatting carried over between text lines
+		Style currentStyle = Style.PLAIN;
+		TagMatch nextTag = new TagMatch();
 
 		lineLoop:
 		for(String line : input) {
-			InteractiveMessagePart messagePart;
 			TaggedContent interactiveTag = getInteractiveTag(line);
 			boolean isTextLine = interactiveTag == null;
 			if(!doInteractives && !isTextLine) {
@@ -123,24 +140,23 @@ public class YamlParser {
 			boolean isHoverLine = false;
 
 			if(isTextLine) {
-				messagePart = new InteractiveMessagePart();
-				message.add(messagePart);
+				messagePart.finish(visitor);
+				messagePart.start();
 			} else /* if Interactive formatting */ {
-				if(message.isEmpty()) {
+				if(!messagePart.started) {
 					continue;
 				}
-				messagePart = message.getLast();
 				Object tag = interactiveTag.tag;
 				if(tag instanceof Click) {
-					messagePart.onClick((Click)interactiveTag.tag);
-					messagePart.onClickContent(interactiveTag.subsequentContent);
+					messagePart.click = (Click)tag;
+					messagePart.clickContent = interactiveTag.subsequentContent == null ? "" : interactiveTag.subsequentContent;
 				} else if(tag instanceof Hover) {
 					line = interactiveTag.subsequentContent;
 					isHoverLine = true;
 					// Hover type changed, reset content
-					if(messagePart.getOnHover() != tag) {
-						messagePart.getOnHoverContent().clear();
-						messagePart.onHover((Hover)tag);
+					if(messagePart.hover != tag) {
+						messagePart.hoverContent.clear();
+						messagePart.hover = (Hover)tag;
 					}
 					// Add hover content below
 				}
@@ -148,88 +164,212 @@ public class YamlParser {
 
 			if(isTextLine || isHoverLine) {
 				// Parse inline enums
-				Color currentLineColor = currentColor;
-				Set<Format> currentLineFormatting = currentFormatting;
-				LinkedList<TextMessagePart> targetList = messagePart;
+				Style currentLineStyle = currentStyle;
+				Runs targetList = messagePart.text;
 				if(isHoverLine) {
 					// Reset - use own
-					currentLineColor = Color.WHITE;
-					currentLineFormatting = EnumSet.noneOf(Format.class);
-					targetList = messagePart.getOnHoverContent();
+					currentLineStyle = Style.PLAIN;
+					targetList = messagePart.hoverContent;
 
 					// Add line break after previous hover line
 					if(!targetList.isEmpty()) {
-						targetList.getLast().appendText("\n");
+						targetList.appendToLast('\n');
 					}
 				}
 
 				// Split into pieces at places where formatting changes
-				while(!line.isEmpty()) {
-					String textToAdd;
-                    TaggedContent nextTag = getNextTag(line);
-                    boolean tagged = nextTag != null;
-
-					if(!tagged) {
-						textToAdd = line;
-						line = "";
-					} else {
-						textToAdd = nextTag.precedingContent;
-						line = nextTag.subsequentContent;
-					}
+				int position = 0;
+				while(position < line.length()) {
+					int tagStart = findNextTag(line, position, nextTag);
+					boolean tagged = tagStart != -1;
+					int textEnd = tagged ? tagStart : line.length();
 
 					// Add a text part with the correct formatting
-					if(!textToAdd.isEmpty()) {
-						TextMessagePart part = new TextMessagePart()
-								.text(unescape(textToAdd))
-								.format(currentLineFormatting)
-								.color(currentLineColor);
-						targetList.add(part);
+					if(textEnd > position) {
+						targetList.add(line, position, textEnd, currentLineStyle);
 					}
-
-					// Handle the change in formatting if a Tag has been detected (this needs to be after creating the InteractiveMessagePart)
-					if(tagged) {
-						// Handle the formatting tag
-						Object tag = nextTag.tag;
-						if(tag instanceof Color) {
-							currentLineColor = (Color)tag;
-						} else if(tag instanceof Format) {
-							if(nextTag.closing) {
-								currentLineFormatting.remove(tag);
-							} else {
-								currentLineFormatting.add((Format)tag);
-							}
-						} else if(tag == Control.BREAK) {
-							if(isHoverLine && !targetList.isEmpty()) {
-								targetList.getLast().appendText("\n");
-							} else {
-								messagePart.newline();
-								currentLineFormatting.clear();
-                                // TODO: Remove this and support multiple line breaks and even content after a break?
-                                continue lineLoop;
+					if(!tagged) {
+						break;
+					}
+					position = nextTag.end;
+
+					// Handle the change in formatting if a Tag has been detected (this needs to be after creating the text part)
+					Object tag = nextTag.tag;
+					if(tag instanceof Color) {
+						currentLineStyle = currentLineStyle.withColor((Color)tag);
+					} else if(tag instanceof Format) {
+						if(nextTag.closing) {
+							currentLineStyle = currentLineStyle.withoutFormat((Format)tag);
+						} else {
+							currentLineStyle = currentLineStyle.withFormat((Format)tag);
+						}
+					} else if(tag == Control.BREAK) {
+						if(isHoverLine && !targetList.isEmpty()) {
+							targetList.appendToLast('\n');
+						} else {
+							messagePart.newline = true;
+							if(!isHoverLine) {
+								// Keeps the color the line started with
+								currentStyle = currentStyle.withoutFormatting();
 							}
-						} else if(tag == Control.RESET) {
-							currentLineFormatting.clear();
-							currentLineColor = Color.WHITE;
+							// TODO: Remove this and support multiple line breaks and even content after a break?
+							continue lineLoop;
 						}
+					} else if(tag == Control.RESET) {
+						currentLineStyle = Style.PLAIN;
 					}
 				}
 
 				if(!isHoverLine) {
 					// Adapt global attributes
-					currentColor = currentLineColor;
+					currentStyle = currentLineStyle;
 				}
 			}
 		}
+		messagePart.finish(visitor);
+	}
+
+	/**
+	 * Part that is being parsed, interactive lines below a text line can still change it
+	 */
+	private static class PendingPart {
+		private boolean started = false;
+		private final Runs text = new Runs();
+		private final Runs hoverContent = new Runs();
+		private Click click;
+		private String clickContent;
+		private Hover hover;
+		private boolean newline;
+
+		/**
+		 * Start a new part
+		 */
+		private void start() {
+			started = true;
+			text.clear();
+			hoverContent.clear();
+			click = null;
+			clickContent = null;
+			hover = null;
+			newline = false;
+		}
 
-		// Cleanup empty parts (some parts only affected the formatting of next parts, but do not have actual content)
-		Iterator<InteractiveMessagePart> it = message.iterator();
-		while(it.hasNext()) {
-			InteractiveMessagePart check = it.next();
-			if(check.size() == 0 && !check.hasNewline()) {
-				it.remove();
+		/**
+		 * Send the part to a visitor
+		 * @param visitor The visitor to send the part to
+		 */
+		private void finish(MessageVisitor visitor) {
+			// Skip empty parts (some parts only affected the formatting of next parts, but do not have actual content)
+			if(started && (!text.isEmpty() || newline)) {
+				visitor.startPart();
+				text.accept(visitor);
+				if(click != null) {
+					visitor.click(click, clickContent);
+				}
+				if(hover != null) {
+					visitor.hover(hover);
+					hoverContent.accept(visitor);
+				}
+				if(newline) {
+					visitor.newline();
+				}
+				visitor.endPart();
+			}
+			started = false;
+		}
+	}
+
+	/**
+	 * Text with a style for each piece, stored in reusable buffers
+	 */
+	private static class Runs {
+		private char[] chars = new char[64];
+		private int length = 0;
+		private int[] ends = new int[8];
+		private Style[] styles = new Style[8];
+		private int count = 0;
+
+		/**
+		 * Remove all runs
+		 */
+		private void clear() {
+			length = 0;
+			count = 0;
+		}
+
+		/**
+		 * Check if there are runs
+		 * @return true if there are no runs, otherwise false
+		 */
+		private boolean isEmpty() {
+			return count == 0;
+		}
+
+		/**
+		 * Add a run with the unescaped text of part of a line
+		 * @param line  The line to take the text from
+		 * @param start The start of the text
+		 * @param end   The end of the text
+		 * @param style The style of the text
+		 */
+		private void add(String line, int start, int end, Style style) {
+			String escaped = null;
+			for(int i = start; i < end; i++) {
+				if(line.charAt(i) == ESCAPE_CHAR) {
+					escaped = unescape(line.substring(start, end));
+					break;
+				}
+			}
+			if(escaped != null) {
+				line = escaped;
+				start = 0;
+				end = escaped.length();
+			}
+
+			ensureCapacity(end-start);
+			line.getChars(start, end, chars, length);
+			length += end-start;
+			if(count == ends.length) {
+				ends = Arrays.copyOf(ends, count*2);
+				styles = Arrays.copyOf(styles, count*2);
+			}
+			ends[count] = length;
+			styles[count] = style;
+			count++;
+		}
+
+		/**
+		 * Append a character to the text of the last run
+		 * @param c The character to append
+		 */
+		private void appendToLast(char c) {
+			ensureCapacity(1);
+			chars[length] = c;
+			length++;
+			ends[count-1] = length;
+		}
+
+		/**
+		 * Make sure the text buffer has room for more characters
+		 * @param extra The number of characters that will be added
+		 */
+		private void ensureCapacity(int extra) {
+			if(length+extra > chars.length) {
+				chars = Arrays.copyOf(chars, Math.max(chars.length*2, length+extra));
+			}
+		}
+
+		/**
+		 * Send the runs to a visitor
+		 * @param visitor The visitor to send the runs to
+		 */
+		private void accept(MessageVisitor visitor) {
+			int start = 0;
+			for(int i = 0; i < count; i++) {
+				visitor.text(styles[i], chars, start, ends[i]);
+				start = ends[i];
 			}
 		}
-		return message;
 	}
 
 	/**
@@ -252,7 +392,7 @@ public class YamlParser {
 		if(isTaggedInteractive(lineContent)) {
 			lineContent = lineContent.replace("", "");
 			// TODO check we can get rid of the dependency on ConsoleGenerator
-			message.add(line, lineContent.substring(0, start) + ConsoleGenerator.generate(YamlParser.parse(insert)) + lineContent.substring(end));
+			message.add(line, lineContent.substring(0, start) + ConsoleGenerator.generate(ParseCache.parse(insert)) + lineContent.substring(end));
 			return;
 		}
 
@@ -282,53 +422,94 @@ public class YamlParser {
 	}
 
 	/**
-	 * Searches and returns the first continuous tag found in the given String.
-	 * @return The tag (plus its preceding and subsequent content) if found.
-	 * Null if nothing is found.
+	 * Searches the first continuous tag in the given String, walking over the characters only once
+	 * @param line  The line to search in
+	 * @param from  The position to start searching at
+	 * @param match Filled with the found tag, the end of the tag and if it is a closing tag
+	 * @return The start of the found tag, or -1 if there is no tag
 	 */
-    private static TaggedContent getNextTag(String line) {
-        // Find matching formatting and control sequences
-        Matcher matcher = tagPattern.matcher(line);
-		while(matcher.find()) {
-            // Check if escaped, backslashes escape backslashes, so uneven number actually escapes the found match
-            int backslashes = 0;
-            int index = matcher.start() - 1;
-            while (index >= 0 && line.charAt(index) == ESCAPE_CHAR) {
-                backslashes++;
-                index--;
-            }
-            if (backslashes % 2 == 1) {
-                continue;
-            }
-
-            // Process the found match
-            boolean closing = false;
-			Object tag;
-            if (matcher.group().equals("\\n")) {
-                tag = Control.BREAK;
-            } else if (matcher.group().startsWith("&") || matcher.group().startsWith(ChatColor.COLOR_CHAR + "")) {
-				tag = NATIVE_TAGS.get(matcher.group().charAt(1)+"".toLowerCase());
-			} else {
-				String content = matcher.group().substring(1, matcher.group().length()-1).toLowerCase();
-				tag = BRACKET_TAGS.get(content);
-
-				// Try closing tag
-				if(tag == null && content.length() > 0 && content.charAt(0) == '/') {
-					tag = BRACKET_TAGS.get(content.substring(1));
-					closing = true;
-					// Control enums cannot be closed
-					if(tag instanceof Control) {
-						continue;
+	private static int findNextTag(String line, int from, TagMatch match) {
+		int length = line.length();
+		int at = from;
+		while(at < length) {
+			char c = line.charAt(at);
+			int end = -1;
+			boolean closing = false;
+			Object tag = null;
+			if(c == '[') {
+				int contentEnd = at+1;
+				while(contentEnd < length && isBracketTagCharacter(line.charAt(contentEnd))) {
+					contentEnd++;
+				}
+				if(contentEnd > at+1 && contentEnd < length && line.charAt(contentEnd) == ']') {
+					end = contentEnd+1;
+					tag = BRACKET_TAGS.get(line, at+1, contentEnd);
+
+					// Try closing tag
+					if(tag == null && line.charAt(at+1) == '/') {
+						tag = BRACKET_TAGS.get(line, at+2, contentEnd);
+						closing = true;
+						// Control enums cannot be closed
+						if(tag instanceof Control) {
+							tag = null;
+						}
 					}
 				}
+			} else if(c == '&' || c == ChatColor.COLOR_CHAR) {
+				if(at+1 < length && isNativeTagCharacter(line.charAt(at+1))) {
+					end = at+2;
+					tag = NATIVE_TAGS.get(line.charAt(at+1));
+				}
+			} else if(c == ESCAPE_CHAR) {
+				if(at+1 < length && line.charAt(at+1) == 'n') {
+					end = at+2;
+					tag = Control.BREAK;
+				}
 			}
 
-			// Continue search if we found something like [abc] or &w that is not a tag
-			if(tag != null) {
-				return new TaggedContent(line.substring(0, matcher.start()), tag, line.substring(matcher.end()), closing);
+			if(end == -1) {
+				at++;
+				continue;
 			}
+
+			// Check if escaped, backslashes escape backslashes, so uneven number actually escapes the found match
+			int backslashes = 0;
+			int index = at-1;
+			while(index >= from && line.charAt(index) == ESCAPE_CHAR) {
+				backslashes++;
+				index--;
+			}
+
+			// Continue search if it is escaped or we found something like [abc] or &w that is not a tag
+			if(backslashes%2 == 1 || tag == null) {
+				at = end;
+				continue;
+			}
+
+			match.tag = tag;
+			match.closing = closing;
+			match.end = end;
+			return at;
 		}
-		return null;
+		return -1;
+	}
+
+	/**
+	 * Check if a character can be used inside a bracket tag
+	 * @param c The character to check
+	 * @return true if the character can be part of a bracket tag, otherwise false
+	 */
+	private static boolean isBracketTagCharacter(char c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '1' && c <= '9') || c == '/' || c == '_';
+	}
+
+	/**
+	 * Check if a character can be used in a native tag (after & or §)
+	 * @param c The character to check
+	 * @return true if the character can be part of a native tag, otherwise false
+	 */
+	private static boolean isNativeTagCharacter(char c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9');
 	}
 
 	/**
@@ -345,9 +526,8 @@ public class YamlParser {
 			} else {
 				int end = line.indexOf(": ", index);
 				if(end != -1) {
-					String inBetween = line.substring(index, end).toLowerCase();
-					if(INTERACTIVE_TAGS.containsKey(inBetween)) {
-						Object tag = INTERACTIVE_TAGS.get(inBetween);
+					Object tag = INTERACTIVE_TAGS.get(line, index, end);
+					if(tag != null) {
 						String subsequentContent = line.substring(end+2);
 						return new TaggedContent(null, tag, subsequentContent, false);
 					}
@@ -447,4 +627,118 @@ public class YamlParser {
 		}
 	}
 
+	/**
+	 * Tag found by {@link #findNextTag(String, int, TagMatch)}
+	 */
+	private static class TagMatch {
+		Object tag;
+		boolean closing;
+		int end;
+	}
+
+	/**
+	 * Lookup table for tags, lookups are case-insensitive and done on a part of a string without copying it
+	 */
+	private static class TagTable {
+		private String[] keys = new String[64];
+		private Object[] values = new Object[64];
+		private int size = 0;
+
+		/**
+		 * Add a tag
+		 * @param key   The name of the tag
+		 * @param value The tag
+		 */
+		void put(String key, Object value) {
+			key = key.toLowerCase();
+			if((size+1)*2 > keys.length) {
+				String[] oldKeys = keys;
+				Object[] oldValues = values;
+				keys = new String[oldKeys.length*2];
+				values = new Object[oldValues.length*2];
+				size = 0;
+				for(int i = 0; i < oldKeys.length; i++) {
+					if(oldKeys[i] != null) {
+						put(oldKeys[i], oldValues[i]);
+					}
+				}
+			}
+
+			int index = spread(key.hashCode()) & (keys.length-1);
+			while(keys[index] != null && !keys[index].equals(key)) {
+				index = (index+1) & (keys.length-1);
+			}
+			if(keys[index] == null) {
+				size++;
+			}
+			keys[index] = key;
+			values[index] = value;
+		}
+
+		/**
+		 * Get a tag
+		 * @param source The string containing the name of the tag
+		 * @param start  The start of the name
+		 * @param end    The end of the name
+		 * @return The tag, or null if there is no tag with this name
+		 */
+		Object get(String source, int start, int end) {
+			// Same as String.hashCode() of the lowercase name
+			int hash = 0;
+			for(int i = start; i < end; i++) {
+				hash = 31*hash+toLowerCase(source.charAt(i));
+			}
+
+			int index = spread(hash) & (keys.length-1);
+			while(keys[index] != null) {
+				if(matches(keys[index], source, start, end)) {
+					return values[index];
+				}
+				index = (index+1) & (keys.length-1);
+			}
+			return null;
+		}
+
+		/**
+		 * Check if a part of a string equals a key, ignoring case
+		 * @param key    The lowercase key
+		 * @param source The string containing the part
+		 * @param start  The start of the part
+		 * @param end    The end of the part
+		 * @return true if the part is equal to the key, otherwise false
+		 */
+		private static boolean matches(String key, String source, int start, int end) {
+			if(key.length() != end-start) {
+				return false;
+			}
+			for(int i = 0; i < key.length(); i++) {
+				if(key.charAt(i) != toLowerCase(source.charAt(start+i))) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * Lowercase ASCII characters
+		 * @param c The character to lowercase
+		 * @return The lowercase character
+		 */
+		private static char toLowerCase(char c) {
+			if(c >= 'A' && c <= 'Z') {
+				return (char)(c+('a'-'A'));
+			}
+			return c;
+		}
+
+		/**
+		 * Spread the bits of a hash to use the lower bits as index
+		 * @param hash The hash to spread
+		 * @return The spread hash
+		 */
+		private static int spread(int hash) {
+			return hash ^ (hash >>> 16);
+		}
+	}
+
 }
@@ -2,8 +2,11 @@ package me.wiefferink.interactivemessenger.processing;
 
 import me.wiefferink.interactivemessenger.Log;
 
+import java.util.concurrent.TimeUnit;
+
 /**
  * Class to store a limit
+ * Limits the number of replacements and optionally the time that replacing may take.
  */
 public class Limit {
 	public int left;
@@ -11,6 +14,23 @@ public class Limit {
 	public boolean notified = false;
 	public Message message;
 	public long started;
+	// Deadline in System.nanoTime() time, only used if hasDeadline is true
+	private long deadline;
+	private boolean hasDeadline = false;
+
+	/**
+	 * Step of replacing that is checked against the deadline
+	 */
+	public enum Phase {
+		// Doing the replacements of a message (key is the key of the message)
+		MESSAGE,
+		// Inserting a language variable like %lang:key% (key is the language key)
+		LANGUAGE,
+		// Inserting a message given as replacement (key is the key of the inserted message)
+		REPLACEMENT,
+		// Getting the value of a named variable from a ReplacementProvider (key is the variable name)
+		PROVIDER
+	}
 
 	/**
 	 * Set the initial limit
@@ -24,6 +44,18 @@ public class Limit {
 		this.started = System.currentTimeMillis();
 	}
 
+	/**
+	 * Set the maximum time replacing may take, starting now
+	 * @param timeout The maximum time
+	 * @param unit    The unit of the timeout
+	 * @return this
+	 */
+	public Limit timeout(long timeout, TimeUnit unit) {
+		this.deadline = System.nanoTime()+unit.toNanos(timeout);
+		this.hasDeadline = true;
+		return this;
+	}
+
 	/**
 	 * Decrease the limit
 	 * @throws ReplacementLimitReachedException when the limit hits zero
@@ -39,6 +71,24 @@ public class Limit {
 		}
 	}
 
+	/**
+	 * Check if the deadline has passed
+	 * @param phase The step of replacing that is about to start or has just been done
+	 * @param key   The key or variable name the step is for
+	 * @throws ReplacementLimitReachedException when the deadline has passed
+	 */
+	public void checkDeadline(Phase phase, String key) throws ReplacementLimitReachedException {
+		if(!hasDeadline || System.nanoTime()-deadline < 0) {
+			return;
+		}
+		left = 0;
+		if(!notified) {
+			notified = true;
+			Log.error("Replacing took too long, stopped at " + phase + " of key: " + key + ", problematic message key: " + message.getKey() + ", first characters of the message: " + Message.getMessageStart(message, 200));
+		}
+		throw new ReplacementLimitReachedException(this, phase, key);
+	}
+
 	/**
 	 * Increase the limit
 	 */
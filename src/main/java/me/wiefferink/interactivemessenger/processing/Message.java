@@ -2,31 +2,50 @@ package me.wiefferink.interactivemessenger.processing;
 
 import me.wiefferink.interactivemessenger.Log;
 import me.wiefferink.interactivemessenger.generators.ConsoleGenerator;
-import me.wiefferink.interactivemessenger.generators.TellrawGenerator;
-import me.wiefferink.interactivemessenger.parsers.YamlParser;
+import me.wiefferink.interactivemessenger.parsers.ParseCache;
+import me.wiefferink.interactivemessenger.source.ExpandedMessageProvider;
 import me.wiefferink.interactivemessenger.source.MessageProvider;
+import me.wiefferink.interactivemessenger.transport.CommandTransport;
+import me.wiefferink.interactivemessenger.transport.MessageTransport;
+import me.wiefferink.interactivemessenger.transport.MultilineSupport;
 import org.apache.commons.lang.StringUtils;
-import org.apache.commons.lang.exception.ExceptionUtils;
 import org.bukkit.Bukkit;
-import org.bukkit.ChatColor;
-import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
 
-import java.io.BufferedWriter;
-import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+/**
+ * Message with replacements that can be send to players, the console and logs
+ * <p>
+ * Rendering is thread-safe as long as the same Message instance is not modified or rendered from multiple threads at once
+ * and the used ReplacementProviders and MessageProvider can be used from multiple threads.
+ * Use {@link #renderAsync(Executor)} to do the work of a message outside of the main server thread.
+ */
 public class Message {
 
 	// CONFIGURATION
-	private static boolean useInteractiveMessages = true;
-	private static boolean useColorsInConsole = false;
-	private static MessageProvider messageProvider = null;
+	static volatile boolean useInteractiveMessages = true;
+	static volatile boolean useColorsInConsole = false;
+	private static volatile MessageProvider messageProvider = null;
+	static volatile MessageTransport transport = new CommandTransport();
+	static volatile MultilineSupport multilineSupport = null;
+	// Maximum time doing the replacements of a message may take in nanoseconds, 0 for no maximum
+	static volatile long renderTimeout = 0;
+	private static final MultilineSupport ALL_PLAYERS = new MultilineSupport() {
+		@Override
+		public boolean supportsMultiline(Player player) {
+			return true;
+		}
+	};
 
 	// Define the symbols used for variables
 	public static final String VARIABLE_START = "%";
@@ -40,21 +59,6 @@ public class Message {
 					Pattern.quote(VARIABLE_END)
 	);
 
-	private static HashMap<Integer, Pattern> indexPatterns = new HashMap<>();
-
-	/**
-	 * Get a cached variable index tagPattern
-	 * @param index The index of the variable tagPattern
-	 * @return The tagPattern for the given index
-	 */
-	private static Pattern getIndexPattern(int index) {
-		Pattern result = indexPatterns.get(index);
-		if(result == null) {
-			result = Pattern.compile(Pattern.quote(VARIABLE_START) + index + Pattern.quote(VARIABLE_END));
-			indexPatterns.put(index, result);
-		}
-		return result;
-	}
 	// Language variable used to insert a prefix
 	public static final String CHATLANGUAGEVARIABLE = "prefix";
 	// Maximum number of replacement rounds (the replaced value can have variables again)
@@ -62,14 +66,20 @@ public class Message {
 	// Limit of the client is 32767 for the complete message
 	public static final int MAXIMUMJSONLENGTH = 30000;
 	// If sending a fancy message does not work we disable it for this run of the server
-	private static boolean fancyWorks = true;
+	static volatile boolean fancyWorks = true;
 
 	// INSTANCE VARIABLES
 	private List<String> message;
-	private Object[] replacements;
+	// The message is owned by the MessageProvider and copied before the first change
+	private boolean messageShared = false;
+	// Replacements split by type, indexed replacements are looked up by their index directly
+	Object[] indexedReplacements;
+	ReplacementProvider[] replacementProviders;
 	private String key = null;
-	private boolean doLanguageReplacements = true;
-	private boolean inline = false;
+	boolean doLanguageReplacements = true;
+	boolean inline = false;
+	// The lines are rendered output instead of lines from the source, their compiled template is not worth caching
+	boolean cacheTemplate = true;
 
 	/**
 	 * Initialize the Message class
@@ -132,6 +142,45 @@ public class Message {
 		useInteractiveMessages = enabled;
 	}
 
+	/**
+	 * Set the transport used to deliver messages to players
+	 * @param transport The transport to use, null to use the default that executes the tellraw command
+	 */
+	public static void useTransport(MessageTransport transport) {
+		if(transport == null) {
+			transport = new CommandTransport();
+		}
+		Message.transport = transport;
+		fancyWorks = true;
+	}
+
+	/**
+	 * Enable or disable sending messages with multiple lines to players as a single component
+	 * This needs only one tellraw command and packet for the whole message, but does not work for 1.7 clients.
+	 * @param enabled true to send a single component to all players, false to send each line separately
+	 */
+	public static void useMultilineComponents(boolean enabled) {
+		multilineSupport = enabled ? ALL_PLAYERS : null;
+	}
+
+	/**
+	 * Send messages with multiple lines as a single component to the players that support it
+	 * @param support Decides for each player if a single component can be used, null to send each line separately
+	 */
+	public static void useMultilineComponents(MultilineSupport support) {
+		multilineSupport = support;
+	}
+
+	/**
+	 * Set the maximum time doing the replacements of a message may take, for example to keep lag-sensitive code fast
+	 * When the time has passed, replacing stops and the message is used without its replacements (the error is logged).
+	 * @param timeout The maximum time, 0 for no maximum
+	 * @param unit    The unit of the timeout
+	 */
+	public static void useRenderTimeout(long timeout, TimeUnit unit) {
+		renderTimeout = unit.toNanos(timeout);
+	}
+
 	/**
 	 * Enable or disable the use of colors when sending a message to a target that is not a Player (console, log, etcetera)
 	 * @param enabled true to enable, false to disable
@@ -146,7 +195,7 @@ public class Message {
 	 */
 	public List<String> get() {
 		doReplacements();
-		return message;
+		return getEditableMessage();
 	}
 
 	/**
@@ -155,7 +204,7 @@ public class Message {
 	 * @return Message as a list
 	 * @throws ReplacementLimitReachedException when the limit is reached
 	 */
-	private List<String> get(Limit limit) throws ReplacementLimitReachedException {
+	List<String> get(Limit limit) throws ReplacementLimitReachedException {
 		doReplacements(limit);
 		return message;
 	}
@@ -185,9 +234,28 @@ public class Message {
 	 * @return The message
 	 */
 	public List<String> getRaw() {
+		return getEditableMessage();
+	}
+
+	/**
+	 * Get the internal message without copying it
+	 * @return The message, can be shared with the MessageProvider and should not be modified
+	 */
+	List<String> getLines() {
 		return message;
 	}
 
+	/**
+	 * Use the lines the provider prepared for rendering, if the lines are still the ones from the provider
+	 * Those have language variables without arguments already replaced, which gives the same result as replacing them while rendering.
+	 */
+	void useExpandedLines() {
+		MessageProvider provider = messageProvider;
+		if(messageShared && doLanguageReplacements && key != null && provider instanceof ExpandedMessageProvider) {
+			message = ((ExpandedMessageProvider)provider).getExpandedMessage(key);
+		}
+	}
+
 	/**
 	 * Get raw message as string
 	 * @return The raw message
@@ -202,7 +270,7 @@ public class Message {
 	 */
 	public String getPlain() {
 		doReplacements();
-		return ConsoleGenerator.generate(YamlParser.parse(message));
+		return ConsoleGenerator.generate(ParseCache.parse(message));
 	}
 
 	/**
@@ -225,7 +293,7 @@ public class Message {
 	 */
 	public Message prefix(boolean doIt) {
 		if(doIt && !isEmpty()) {
-			message.add(0, VARIABLE_START + LANGUAGE_KEY_PREFIX + CHATLANGUAGEVARIABLE + VARIABLE_END);
+			getEditableMessage().add(0, VARIABLE_START + LANGUAGE_KEY_PREFIX + CHATLANGUAGEVARIABLE + VARIABLE_END);
 		}
 		return this;
 	}
@@ -247,7 +315,21 @@ public class Message {
 	 * @return this
 	 */
 	public Message replacements(Object... replacements) {
-		this.replacements = replacements;
+		indexedReplacements = null;
+		replacementProviders = null;
+		if(replacements != null) {
+			List<Object> indexed = new ArrayList<>(replacements.length);
+			List<ReplacementProvider> providers = new ArrayList<>();
+			for(Object replacement : replacements) {
+				if(replacement instanceof ReplacementProvider) {
+					providers.add((ReplacementProvider)replacement);
+				} else {
+					indexed.add(replacement);
+				}
+			}
+			indexedReplacements = indexed.toArray();
+			replacementProviders = providers.toArray(new ReplacementProvider[providers.size()]);
+		}
 		return this;
 	}
 
@@ -257,7 +339,7 @@ public class Message {
 	 * @return this
 	 */
 	public Message append(List<String> lines) {
-		message.addAll(lines);
+		getEditableMessage().addAll(lines);
 		return this;
 	}
 
@@ -276,7 +358,7 @@ public class Message {
 	 * @return this
 	 */
 	public Message append(String line) {
-		message.add(line);
+		getEditableMessage().add(line);
 		return this;
 	}
 
@@ -286,7 +368,7 @@ public class Message {
 	 * @return this
 	 */
 	public Message prepend(List<String> lines) {
-		message.addAll(0, lines);
+		getEditableMessage().addAll(0, lines);
 		return this;
 	}
 
@@ -305,7 +387,7 @@ public class Message {
 	 * @return this
 	 */
 	public Message prepend(String line) {
-		message.add(0, line);
+		getEditableMessage().add(0, line);
 		return this;
 	}
 
@@ -336,53 +418,71 @@ public class Message {
 		if(message == null || message.size() == 0 || (message.size() == 1 && message.get(0).length() == 0) || target == null) {
 			return this;
 		}
+		render().send(target);
+		return this;
+	}
+
+	/**
+	 * Send the message to multiple targets, replacements, parsing and generating are only done once
+	 * @param targets The targets to send the message to (Player, CommandSender, Logger)
+	 * @return this
+	 */
+	public Message broadcast(Iterable<?> targets) {
+		if(message == null || message.size() == 0 || (message.size() == 1 && message.get(0).length() == 0) || targets == null) {
+			return this;
+		}
+		render().broadcast(targets);
+		return this;
+	}
+
+	/**
+	 * Do all replacements and get the result, which can be send to targets without doing the replacements again
+	 * @return The rendered message
+	 */
+	public RenderedMessage render() {
 		doReplacements();
-		if(target instanceof Player) {
-			boolean sendPlain = true;
-			if(useInteractiveMessages && fancyWorks) {
-				try {
-					boolean result = true;
-					List<String> jsonMessages = TellrawGenerator.generate(YamlParser.parse(message));
-					for(String jsonMessage : jsonMessages) {
-						if(jsonMessage.length() > MAXIMUMJSONLENGTH) {
-							Log.error("Message with key", key, "could not be send, results in a JSON string that is too big to send to the client, start of the message:", getMessageStart(this, 200));
-							return this;
-						}
-						result &= Bukkit.dispatchCommand(Bukkit.getConsoleSender(), "tellraw "+((Player)target).getName()+" "+jsonMessage);
-					}
-					sendPlain = !result;
-					fancyWorks = result;
-				} catch(Exception e) {
-					fancyWorks = false;
-					Log.error("Sending fancy message did not work, falling back to plain messages. Message key:", key, ", error:", ExceptionUtils.getStackTrace(e));
-				}
-			}
-			if(sendPlain) { // Fancy messages disabled or broken
-				((Player)target).sendMessage(ConsoleGenerator.generate(YamlParser.parse(message)));
-			}
-		} else {
-			String plainMessage = ConsoleGenerator.generate(YamlParser.parse(message));
+		return new RenderedMessage(key, message);
+	}
 
-			// Send to the target
-			if(target instanceof CommandSender) {
-				// Strip colors if disabled
-				if(!useColorsInConsole) {
-					plainMessage = ChatColor.stripColor(plainMessage);
-				}
-				((CommandSender)target).sendMessage(plainMessage);
-			} else if(target instanceof Logger) {
-				((Logger)target).info(ChatColor.stripColor(plainMessage));
-			} else if(target instanceof BufferedWriter) {
-				try {
-					((BufferedWriter)target).write(ChatColor.stripColor(plainMessage));
-					((BufferedWriter)target).newLine();
-				} catch(IOException e) {
-					Log.warn("Exception while writing to BufferedWriter:", ExceptionUtils.getStackTrace(e));
-				}
-			} else {
-				Log.warn("Could not send message (key: " + key + ") because the target (" + target.getClass().getName() + ") is not recognized, message: " + plainMessage);
+	/**
+	 * Render the message using an executor, including parsing and generating the output for all targets
+	 * The returned RenderedMessage should be send from the main server thread
+	 * @param executor The executor to render the message with
+	 * @return Future that completes with the rendered message
+	 */
+	public Future<RenderedMessage> renderAsync(Executor executor) {
+		FutureTask<RenderedMessage> task = new FutureTask<>(new Callable<RenderedMessage>() {
+			@Override
+			public RenderedMessage call() {
+				return render().prepare();
 			}
+		});
+		executor.execute(task);
+		return task;
+	}
+
+	/**
+	 * Render the message asynchronously and send it to a target from the main server thread when done
+	 * @param plugin The plugin to schedule the tasks for
+	 * @param target The target to send the message to (Player, CommandSender, Logger)
+	 * @return this
+	 */
+	public Message sendAsync(final Plugin plugin, final Object target) {
+		if(target == null) {
+			return this;
 		}
+		Bukkit.getScheduler().runTaskAsynchronously(plugin, new Runnable() {
+			@Override
+			public void run() {
+				final RenderedMessage rendered = render().prepare();
+				Bukkit.getScheduler().runTask(plugin, new Runnable() {
+					@Override
+					public void run() {
+						rendered.send(target);
+					}
+				});
+			}
+		});
 		return this;
 	}
 
@@ -403,12 +503,25 @@ public class Message {
 	 */
 	private Message setMessage(List<String> message) {
 		this.message = message;
+		this.messageShared = false;
 		if(this.message == null) {
 			this.message = new ArrayList<>();
 		}
 		return this;
 	}
 
+	/**
+	 * Get the internal message for changing it, copies it first when it is shared with the MessageProvider
+	 * @return The message, owned by this Message
+	 */
+	private List<String> getEditableMessage() {
+		if(messageShared) {
+			message = new ArrayList<>(message);
+			messageShared = false;
+		}
+		return message;
+	}
+
 	/**
 	 * Set the internal message with a key
 	 * @param key The message key to get the message for
@@ -420,6 +533,8 @@ public class Message {
 			Log.error("Tried to get message with key", key + ", but there is no MessageProvider!");
 		} else {
 			this.setMessage(messageProvider.getMessage(key));
+			// Lists from the provider are not copied unless this message changes them
+			messageShared = true;
 		}
 		return this;
 	}
@@ -443,6 +558,10 @@ public class Message {
 	 */
 	public Message doReplacements() {
 		Limit limit = new Limit(REPLACEMENTLIMIT, this);
+		long timeout = renderTimeout;
+		if(timeout > 0) {
+			limit.timeout(timeout, TimeUnit.NANOSECONDS);
+		}
 
 		try {
 			doReplacements(limit);
@@ -461,222 +580,18 @@ public class Message {
 	 * @throws ReplacementLimitReachedException When the limit has been hit before replacement is finished
 	 */
 	public Message doReplacements(Limit limit) throws ReplacementLimitReachedException {
-		limit.depth++;
-
 		//depthPrint(limit, ">>> doReplacements:", message, limit);
-		// Replace LANGUAGE_VARIABLE_PATTERN until they are all gone, nothing changes anymore or when the limit is reached
-		try {
-			List<String> outerOriginal;
-			// Repeat replacements for if language replacements introduced new LANGUAGE_VARIABLE_PATTERN
-			do {
-				outerOriginal = new ArrayList<>(message);
-				List<String> innerOriginal;
-				limit.decrease();
-
-				// Do argument replacements
-				do {
-					innerOriginal = new ArrayList<>(message);
-					limit.decrease();
-					replaceArgumentVariables(limit);
-				} while(!message.equals(innerOriginal));
-				limit.increase(); // Compensate last round that did nothing
-
-				// Do language replacements
-				if(doLanguageReplacements) {
-					do {
-						innerOriginal = new ArrayList<>(message);
-						limit.decrease();
-						replaceLanguageVariables(limit);
-					} while(!message.equals(innerOriginal));
-				}
-				limit.increase(); // Compensate last round that did nothing
-			} while(!message.equals(outerOriginal));
-			limit.increase(); // Compensate last round that did nothing
-
-		} catch(StackOverflowError e) {
-			limit.left = 0;
-			limit.notified = true;
-			Log.error("Too many recursive replacements for message with key: " + limit.message.key + " (probably includes itself as replacement), start of the message: " + getMessageStart(limit.message, 200));
-			// Trigger exception
-			limit.decrease();
-		}
-		limit.depth--;
+		MessageTemplate.resolve(this, limit);
 		return this;
 	}
 
 	/**
-	 * Replace argument LANGUAGE_VARIABLE_PATTERN in a message
-	 * The arguments to apply as replacements:
-	 * - If it is a GeneralRegion the replacements of the region will be applied
-	 * - Else the parameter will replace its number surrounded with VARIABLE_START and VARIABLE_END
-	 * @throws ReplacementLimitReachedException when the limit is reached
+	 * Set the message after doing the replacements
+	 * @param message The message with all replacements done
 	 */
-	private void replaceArgumentVariables(Limit limit) throws ReplacementLimitReachedException {
-		limit.depth++;
-		//depthPrint(limit, ">>> replaceArgumentVariables:", message, limit);
-		if(message == null || message.size() == 0 || replacements == null) {
-			//depthPrint(limit, "quick return");
-			limit.depth--;
-			return;
-		}
-
-		for(int i = 0; i < message.size(); i++) {
-			int number = 0;
-			for(Object param : replacements) {
-				String line = message.get(i);
-
-				// Skip null, but increase index
-				if(param == null) {
-					Log.warn("null replacement for message", limit.message, "at index", number);
-
-					// Set param to an empty string to ensure the variable will be removed from the message (preventing loops)
-					param = "";
-				}
-
-				// Match indexed or named variables
-				Matcher matcher;
-				boolean named;
-				if(param instanceof ReplacementProvider) {
-					matcher = VARIABLE_PATTERN.matcher(line);
-					named = true;
-				} else {
-					matcher = getIndexPattern(number).matcher(line);
-					named = false;
-				}
-
-				// Find an replace
-				while(matcher.find()) {
-
-					// Skip escaped matches
-					int beforeAt = matcher.start() - 1;
-					if(beforeAt >= 0 && line.charAt(beforeAt) == YamlParser.ESCAPE_CHAR) {
-						//depthPrint(limit, "skipping indexed variable:", matcher.group(), limit);
-						continue;
-					}
-					//depthPrint(limit, "replacing indexed variable:", matcher.group());
-
-					Object toInsert = param;
-					if(named) {
-						toInsert = ((ReplacementProvider) param).provideReplacement(matcher.group("name"));
-						// Skip if null
-						if(toInsert == null) {
-							break;
-						}
-					}
-
-					// Insert another Message
-					if(toInsert instanceof Message) {
-						int startDiff = message.size() - i;
-						//depthPrint(limit, "insert message raw:", ((Message)toInsert).message);
-						Message toInsertMessage = (Message) toInsert;
-
-						// Insert inline
-						if(toInsertMessage.inline) {
-							message.set(i, insert(line, toInsertMessage.getSingle(limit), matcher.start(), matcher.end()));
-						}
-
-						// Insert as message
-						else {
-							List<String> insertMessage = toInsertMessage.get(limit);
-							//depthPrint(limit, "insert message resolved:", ((Message)toInsert).message);
-							YamlParser.insertMessage(message, insertMessage, i, matcher.start(), matcher.end());
-							// Skip to end of insert
-							i = Math.max(0, message.size() - startDiff);
-						}
-					}
-
-					// Insert a simple string
-					else {
-						// Insert it inline, assuming this might be user input, therefore escaping it
-						//depthPrint(limit, "insert string:", toInsert.toString());
-						message.set(i, insert(line, YamlParser.escape(toInsert.toString()), matcher.start(), matcher.end()));
-					}
-					break; // Maximum of one replacement`
-				}
-
-				if(!named) {
-					number++;
-				}
-			}
-		}
-		limit.depth--;
-	}
-
-	/**
-	 * Insert a string into another one, replacing a part of the base
-	 * @param base   The base string to insert into
-	 * @param insert The string to insert
-	 * @param start  The start of the region to replace
-	 * @param end	The end of the region to replace
-	 * @return The formatted string
-	 */
-	private String insert(String base, String insert, int start, int end) {
-		String newMessage = "";
-		if(start > 0) {
-			newMessage += base.substring(0, start);
-		}
-		newMessage += insert;
-		if(end < base.length()) {
-			newMessage += base.substring(end);
-		}
-		return newMessage;
-	}
-
-	/**
-	 * Replace all language LANGUAGE_VARIABLE_PATTERN in a message
-	 * @throws ReplacementLimitReachedException when the limit is reached
-	 */
-	private void replaceLanguageVariables(Limit limit) throws ReplacementLimitReachedException {
-		limit.depth++;
-		//depthPrint(limit, ">>> replaceLanguageVariables:", message, limit);
-		if(message == null || message.size() == 0) {
-			//depthPrint(limit, "quick return");
-			limit.depth--;
-			return;
-		}
-
-		for(int i = 0; i < message.size(); i++) {
-			Matcher matcher = LANGUAGE_VARIABLE_PATTERN.matcher(message.get(i));
-			while(matcher.find()) {
-				// Check for escaping
-				int beforeAt = matcher.start()-1;
-				if(beforeAt >= 0 && message.get(i).charAt(beforeAt) == YamlParser.ESCAPE_CHAR) {
-					//depthPrint(limit, "skipping variable:", matcher.group(), limit);
-					continue;
-				}
-				//depthPrint(limit, "replacing variable:", matcher.group());
-
-				// Parse arguments
-				String variable = matcher.group();
-				String key;
-				Object[] arguments = null;
-				if(variable.contains("|")) {
-					key = variable.substring(VARIABLE_START.length() + LANGUAGE_KEY_PREFIX.length(), variable.indexOf("|"));
-					String[] stringArguments = variable.substring(variable.indexOf("|") + 1, variable.length() - VARIABLE_END.length()).split("\\|");
-					// Wrap arguments in Message object to prevent escaping
-					arguments = new Message[stringArguments.length];
-					for(int argumentIndex = 0; argumentIndex < stringArguments.length; argumentIndex++) {
-						// Marks as inline to prevent spreading the language variable onto multiple lines
-						arguments[argumentIndex] = Message.fromString(stringArguments[argumentIndex]).inline();
-					}
-				} else {
-					key = variable.substring(VARIABLE_START.length() + LANGUAGE_KEY_PREFIX.length(), variable.length() - VARIABLE_END.length());
-				}
-				Message insert = Message.fromKey(key);
-				if(arguments != null) {
-					insert.replacements(arguments);
-				}
-
-				// Insert message
-				int startDiff = message.size()-i;
-				List<String> insertMessage = insert.get(limit);
-				YamlParser.insertMessage(message, insertMessage, i, matcher.start(), matcher.end());
-				// Skip to end of insert
-				i = message.size()-startDiff;
-				break; // Maximum of one replacement
-			}
-		}
-		limit.depth--;
+	void setReplaced(List<String> message) {
+		this.message = message;
+		this.messageShared = false;
 	}
 
 	@Override
@@ -691,9 +606,19 @@ public class Message {
 	 * @return The start of the message with at most maximumLength characters
 	 */
 	public static String getMessageStart(Message message, int maximumLength) {
+		return getMessageStart(message.getLines(), maximumLength);
+	}
+
+	/**
+	 * Get a start of the message with a maximum length
+	 * @param lines         The lines of the message
+	 * @param maximumLength The maximum length to return
+	 * @return The start of the message with at most maximumLength characters
+	 */
+	static String getMessageStart(List<String> lines, int maximumLength) {
 		String messageStart = "";
-		for(int i = 0; i < message.getRaw().size() && messageStart.length() < maximumLength; i++) {
-			messageStart += message.getRaw().get(i).substring(0, Math.min(maximumLength, message.getRaw().get(i).length()));
+		for(int i = 0; i < lines.size() && messageStart.length() < maximumLength; i++) {
+			messageStart += lines.get(i).substring(0, Math.min(maximumLength, lines.get(i).length()));
 		}
 		return messageStart.substring(0, Math.min(maximumLength, messageStart.length()));
 	}
@@ -0,0 +1,1002 @@
+package me.wiefferink.interactivemessenger.processing;
+
+import me.wiefferink.interactivemessenger.Log;
+import me.wiefferink.interactivemessenger.generators.ConsoleGenerator;
+import me.wiefferink.interactivemessenger.parsers.ParseCache;
+import me.wiefferink.interactivemessenger.parsers.YamlParser;
+import org.apache.commons.lang.StringUtils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compiled form of the lines of a message
+ * Variables are located once when compiling, rendering is a single pass over the resulting tokens
+ */
+public class MessageTemplate {
+
+	// Maximum number of compiled templates to keep around
+	public static final int CACHE_SIZE = 500;
+
+	// Least recently used templates are evicted first
+	private static final Map<List<String>, MessageTemplate> cache = new LinkedHashMap<List<String>, MessageTemplate>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<List<String>, MessageTemplate> eldest) {
+			return size() > CACHE_SIZE;
+		}
+	};
+
+	// Remembered result of a provider that has no replacement for a variable
+	private static final Object NO_REPLACEMENT = new Object();
+
+	private final Line[] lines;
+	private final boolean hasVariables;
+
+	/**
+	 * Constructor
+	 * @param lines The compiled lines
+	 */
+	private MessageTemplate(Line[] lines) {
+		this.lines = lines;
+		boolean variables = false;
+		for(Line line : lines) {
+			variables |= line.hasVariables();
+		}
+		this.hasVariables = variables;
+	}
+
+	/**
+	 * Get the compiled template for the given lines, compiled templates are cached
+	 * @param input The lines to compile
+	 * @return The compiled template
+	 */
+	public static MessageTemplate compile(List<String> input) {
+		MessageTemplate result;
+		synchronized(cache) {
+			result = cache.get(input);
+		}
+		if(result == null) {
+			result = compileUncached(input);
+			synchronized(cache) {
+				cache.put(new ArrayList<>(input), result);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Compile the given lines without caching the template
+	 * Used for lines that are rendered once, like the result of inserting a message, so they do not evict the templates of source lines.
+	 * @param input The lines to compile
+	 * @return The compiled template
+	 */
+	static MessageTemplate compileUncached(List<String> input) {
+		Line[] lines = new Line[input.size()];
+		for(int i = 0; i < lines.length; i++) {
+			String line = input.get(i);
+			if(line == null) {
+				line = "";
+			}
+			lines[i] = new Line(line, YamlParser.isTaggedInteractive(line), tokenize(line));
+		}
+		return new MessageTemplate(lines);
+	}
+
+	/**
+	 * Remove all cached templates
+	 */
+	static void clearCache() {
+		synchronized(cache) {
+			cache.clear();
+		}
+	}
+
+	/**
+	 * Get the number of cached templates
+	 * @return The number of templates in the cache
+	 */
+	static int getCacheSize() {
+		synchronized(cache) {
+			return cache.size();
+		}
+	}
+
+	/**
+	 * Get the keys of the language variables in the given lines, like 'key' for %lang:key%
+	 * Variables in the arguments of a language variable are not included, those are never replaced.
+	 * @param input The lines to search
+	 * @return The keys of the language variables, in order of appearance
+	 */
+	public static List<String> getLanguageReferences(List<String> input) {
+		List<String> result = new ArrayList<>();
+		for(String line : input) {
+			if(!mightHaveLanguageVariable(line)) {
+				continue;
+			}
+			for(Token token : tokenize(line)) {
+				if(token.type == TokenType.LANGUAGE) {
+					result.add(token.name);
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Replace language variables without arguments by the given lines, like rendering would insert them
+	 * Only variables in text lines are replaced, variables in interactive lines and variables with arguments are kept.
+	 * @param input      The lines to replace variables in
+	 * @param expansions The lines to insert for the language keys that should be replaced, these should not contain language variables
+	 * @return The lines with the variables replaced, or the input if there is nothing to replace
+	 */
+	public static List<String> expandLanguageVariables(List<String> input, Map<String, List<String>> expansions) {
+		List<String> result = new ArrayList<>(input.size());
+		boolean expanded = false;
+		int i = 0;
+		while(i < input.size()) {
+			String line = input.get(i);
+			i++;
+			if(line == null || YamlParser.isTaggedInteractive(line)) {
+				result.add(line);
+				continue;
+			}
+
+			// Interactive lines following a text line apply to all lines it gets split into
+			List<String> interactives = new ArrayList<>();
+			while(i < input.size() && input.get(i) != null && YamlParser.isTaggedInteractive(input.get(i))) {
+				interactives.add(input.get(i));
+				i++;
+			}
+
+			Token[] tokens = mightHaveLanguageVariable(line) ? tokenize(line) : null;
+			if(tokens == null || !hasExpansion(tokens, expansions)) {
+				result.add(line);
+				result.addAll(interactives);
+				continue;
+			}
+
+			expanded = true;
+			RenderTarget target = new RenderTarget(false);
+			target.result = result;
+			target.interactives = interactives;
+			for(Token token : tokens) {
+				if(isExpansion(token, expansions)) {
+					target.insertLines(expansions.get(token.name));
+				} else {
+					target.append(token.text);
+				}
+			}
+			target.finish();
+		}
+		return expanded ? result : input;
+	}
+
+	/**
+	 * Check if any of the tokens is a language variable that can be replaced
+	 * @param tokens     The tokens to check
+	 * @param expansions The lines to insert for the language keys that should be replaced
+	 * @return true if one of the tokens should be replaced, otherwise false
+	 */
+	private static boolean hasExpansion(Token[] tokens, Map<String, List<String>> expansions) {
+		for(Token token : tokens) {
+			if(isExpansion(token, expansions)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Check if a token is a language variable that can be replaced
+	 * @param token      The token to check
+	 * @param expansions The lines to insert for the language keys that should be replaced
+	 * @return true if the token should be replaced, otherwise false
+	 */
+	private static boolean isExpansion(Token token, Map<String, List<String>> expansions) {
+		return token.type == TokenType.LANGUAGE && token.arguments == null && expansions.containsKey(token.name);
+	}
+
+	/**
+	 * Quick check for language variables, to skip tokenizing most lines
+	 * @param line The line to check
+	 * @return false if the line certainly has no language variables, otherwise true
+	 */
+	private static boolean mightHaveLanguageVariable(String line) {
+		return line != null && line.contains(Message.VARIABLE_START+Message.LANGUAGE_KEY_PREFIX);
+	}
+
+	/**
+	 * Check if the template contains any variables
+	 * @return true if there are variables to replace, false if rendering results in the input lines
+	 */
+	public boolean hasVariables() {
+		return hasVariables;
+	}
+
+	/**
+	 * Render the template with the replacements and settings of a message
+	 * Inserted messages are rendered again with the same message, just like the content that was already there
+	 * @param message The message to get the replacements and settings from
+	 * @param limit   The limit to hold to
+	 * @return The resulting lines
+	 * @throws ReplacementLimitReachedException when the limit is reached
+	 */
+	public List<String> render(Message message, Limit limit) throws ReplacementLimitReachedException {
+		TemplateFrame frame = new TemplateFrame(this, message);
+		new Resolver(limit).run(frame);
+		return frame.result;
+	}
+
+	/**
+	 * Do all replacements of a message, including the replacements of the messages inserted into it
+	 * @param message The message to do the replacements for, its lines are replaced by the result
+	 * @param limit   The limit to hold to
+	 * @throws ReplacementLimitReachedException when the limit is reached
+	 */
+	static void resolve(Message message, Limit limit) throws ReplacementLimitReachedException {
+		new Resolver(limit).run(new MessageFrame(message, null));
+	}
+
+	/**
+	 * Renders messages using an explicit stack of frames instead of recursion
+	 * Inserting a message needs the result of rendering that message first, the frame that inserts it waits on the stack
+	 * until the frame of the inserted message is done. Deeply nested messages therefore cannot overflow the stack.
+	 */
+	private static class Resolver {
+		final Limit limit;
+		final ArrayDeque<Frame> stack = new ArrayDeque<>();
+		// Keys of messages without arguments that are being rendered, rendering one of them again would never end
+		final Set<String> keys = new HashSet<>();
+		// Results of the replacement providers by variable name, providers are often slow and variables used multiple times
+		final Map<ReplacementProvider, Map<String, Object>> provided = new IdentityHashMap<>();
+
+		/**
+		 * Constructor
+		 * @param limit The limit to hold to
+		 */
+		Resolver(Limit limit) {
+			this.limit = limit;
+		}
+
+		/**
+		 * Run frames until the given frame is done
+		 * @param root The frame to run
+		 * @throws ReplacementLimitReachedException when the limit is reached
+		 */
+		void run(Frame root) throws ReplacementLimitReachedException {
+			stack.push(root);
+			while(!stack.isEmpty()) {
+				if(stack.peek().step(this)) {
+					stack.pop();
+				}
+			}
+		}
+
+		/**
+		 * Start a frame, it runs before the frame that is currently running continues
+		 * @param frame The frame to start
+		 * @return The started frame
+		 */
+		<T extends Frame> T push(T frame) {
+			stack.push(frame);
+			return frame;
+		}
+
+		/**
+		 * Get the replacement for a variable from a provider, remembering the result unless it is marked as uncached
+		 * @param provider The provider to get the replacement from
+		 * @param variable The name of the variable
+		 * @return The replacement for the variable, or null if the provider has no replacement for it
+		 * @throws ReplacementLimitReachedException when the deadline has passed
+		 */
+		Object provide(ReplacementProvider provider, String variable) throws ReplacementLimitReachedException {
+			Map<String, Object> values = provided.get(provider);
+			if(values == null) {
+				values = new HashMap<>();
+				provided.put(provider, values);
+			}
+			Object result = values.get(variable);
+			if(result != null) {
+				return result == NO_REPLACEMENT ? null : result;
+			}
+
+			result = provider.provideReplacement(variable);
+			limit.checkDeadline(Limit.Phase.PROVIDER, variable);
+			if(result instanceof Replacement.Uncached) {
+				return ((Replacement.Uncached)result).replacement;
+			}
+			values.put(variable, result == null ? NO_REPLACEMENT : result);
+			return result;
+		}
+
+		/**
+		 * Start rendering a message from a language file
+		 * @param insert The message to render
+		 * @param key    The key of the message if it has no arguments, otherwise null
+		 * @return The started frame
+		 * @throws ReplacementLimitReachedException when the message is already being rendered
+		 */
+		MessageFrame pushLanguage(Message insert, String key) throws ReplacementLimitReachedException {
+			if(key != null && !keys.add(key)) {
+				limit.left = 0;
+				limit.notified = true;
+				Log.error("Message includes itself through language variables, problematic message key: " + key + ", replacing started for message key: " + limit.message.getKey() + ", start of the message: " + Message.getMessageStart(limit.message, 200));
+				throw new ReplacementLimitReachedException(limit);
+			}
+			return push(new MessageFrame(insert, key));
+		}
+	}
+
+	/**
+	 * Part of the work of rendering, can wait for other frames to finish
+	 */
+	private abstract static class Frame {
+		/**
+		 * Continue the work of this frame until it is done or has to wait for a frame it started
+		 * @param resolver The resolver running this frame
+		 * @return true when this frame is done, false when it started another frame that needs to be done first
+		 * @throws ReplacementLimitReachedException when the limit is reached
+		 */
+		abstract boolean step(Resolver resolver) throws ReplacementLimitReachedException;
+	}
+
+	/**
+	 * Does all replacements of a message, like Message#doReplacements()
+	 */
+	private static class MessageFrame extends Frame {
+		final Message message;
+		final String key;
+		TemplateFrame render;
+		List<String> result;
+
+		/**
+		 * Constructor
+		 * @param message The message to do the replacements for
+		 * @param key     The key of the message if it should be tracked to detect loops, otherwise null
+		 */
+		MessageFrame(Message message, String key) {
+			this.message = message;
+			this.key = key;
+		}
+
+		@Override
+		boolean step(Resolver resolver) throws ReplacementLimitReachedException {
+			if(render == null) {
+				resolver.limit.checkDeadline(Limit.Phase.MESSAGE, message.getKey());
+				resolver.limit.depth++;
+				message.useExpandedLines();
+				MessageTemplate template = message.cacheTemplate ? compile(message.getLines()) : compileUncached(message.getLines());
+				if(template.hasVariables()) {
+					render = resolver.push(new TemplateFrame(template, message));
+					return false;
+				}
+			} else {
+				message.setReplaced(render.result);
+			}
+			resolver.limit.depth--;
+			if(key != null) {
+				resolver.keys.remove(key);
+			}
+			result = message.getLines();
+			return true;
+		}
+	}
+
+	/**
+	 * Renders the lines of a template
+	 */
+	private static class TemplateFrame extends Frame {
+		// What to do next
+		private static final int NEXT_LINE = 0;
+		private static final int NEXT_INTERACTIVE = 1;
+		private static final int LONE_INTERACTIVE_DONE = 2;
+		private static final int INTERACTIVE_DONE = 3;
+		private static final int TEXT_DONE = 4;
+
+		final MessageTemplate template;
+		final Message message;
+		List<String> result;
+		int state = NEXT_LINE;
+		int line = 0;
+		Line textLine;
+		List<String> interactives;
+		RenderTarget target;
+
+		/**
+		 * Constructor
+		 * @param template The template to render
+		 * @param message  The message to get the replacements and settings from
+		 */
+		TemplateFrame(MessageTemplate template, Message message) {
+			this.template = template;
+			this.message = message;
+			this.result = new ArrayList<>(template.lines.length);
+		}
+
+		@Override
+		boolean step(Resolver resolver) {
+			Line[] lines = template.lines;
+			if(!template.hasVariables) {
+				for(Line line : lines) {
+					result.add(line.raw);
+				}
+				return true;
+			}
+
+			while(true) {
+				switch(state) {
+					case NEXT_LINE:
+						if(line >= lines.length) {
+							return true;
+						}
+						// Interactive line without a text line in front of it
+						if(lines[line].interactive) {
+							target = new RenderTarget(true);
+							resolver.push(new TokensFrame(lines[line].tokens, message, target, true));
+							line++;
+							state = LONE_INTERACTIVE_DONE;
+							return false;
+						}
+						textLine = lines[line];
+						line++;
+						interactives = new ArrayList<>();
+						state = NEXT_INTERACTIVE;
+						break;
+					case NEXT_INTERACTIVE:
+						// Interactive lines following a text line apply to all lines it gets split into
+						if(line < lines.length && lines[line].interactive) {
+							target = new RenderTarget(true);
+							resolver.push(new TokensFrame(lines[line].tokens, message, target, true));
+							line++;
+							state = INTERACTIVE_DONE;
+							return false;
+						}
+						target = new RenderTarget(false);
+						target.result = result;
+						target.interactives = interactives;
+						resolver.push(new TokensFrame(textLine.tokens, message, target, true));
+						state = TEXT_DONE;
+						return false;
+					case LONE_INTERACTIVE_DONE:
+						result.add(target.current.toString());
+						state = NEXT_LINE;
+						break;
+					case INTERACTIVE_DONE:
+						interactives.add(target.current.toString());
+						state = NEXT_INTERACTIVE;
+						break;
+					case TEXT_DONE:
+						target.finish();
+						state = NEXT_LINE;
+						break;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Renders tokens to a target
+	 */
+	private static class TokensFrame extends Frame {
+		// What to do next
+		private static final int NEXT_TOKEN = 0;
+		private static final int ARGUMENT_DONE = 1;
+		private static final int INSERT_DONE = 2;
+		private static final int INSERT_RENDERED = 3;
+		private static final int INLINE_DONE = 4;
+
+		final Token[] tokens;
+		final Message message;
+		final RenderTarget target;
+		final boolean languageReplacements;
+		int state = NEXT_TOKEN;
+		int token = 0;
+
+		// Message that is being inserted
+		Message insert;
+		MessageFrame insertFrame;
+		TemplateFrame insertRender;
+		Token[][] argumentTokens;
+		Message[] arguments;
+		int argument;
+		RenderTarget argumentTarget;
+
+		/**
+		 * Constructor
+		 * @param tokens               The tokens to render
+		 * @param message              The message to get the replacements and settings from
+		 * @param target               The target to render to
+		 * @param languageReplacements true to replace language variables, false to leave them as-is
+		 */
+		TokensFrame(Token[] tokens, Message message, RenderTarget target, boolean languageReplacements) {
+			this.tokens = tokens;
+			this.message = message;
+			this.target = target;
+			this.languageReplacements = languageReplacements;
+		}
+
+		@Override
+		boolean step(Resolver resolver) throws ReplacementLimitReachedException {
+			while(true) {
+				switch(state) {
+					case NEXT_TOKEN:
+						if(token >= tokens.length) {
+							return true;
+						}
+						Token current = tokens[token];
+						token++;
+						if(renderToken(current, resolver)) {
+							return false;
+						}
+						break;
+					case ARGUMENT_DONE:
+						// Wrap arguments in Message object to prevent escaping
+						// Marks as inline to prevent spreading the language variable onto multiple lines
+						arguments[argument] = Message.fromString(argumentTarget.current.toString()).inline();
+						arguments[argument].cacheTemplate = false;
+						argument++;
+						if(startArgument(resolver)) {
+							return false;
+						}
+						insert.replacements((Object[])arguments);
+						insertFrame = resolver.pushLanguage(insert, null);
+						state = INSERT_DONE;
+						return false;
+					case INSERT_DONE:
+						// Inserted messages are rendered again with the message they are inserted into
+						insertRender = resolver.push(new TemplateFrame(compileUncached(insertFrame.result), message));
+						state = INSERT_RENDERED;
+						return false;
+					case INSERT_RENDERED:
+						target.insertLines(insertRender.result);
+						state = NEXT_TOKEN;
+						break;
+					case INLINE_DONE:
+						resolver.push(new TokensFrame(tokenize(StringUtils.join(insertFrame.result, "")), message, target, true));
+						state = NEXT_TOKEN;
+						return false;
+				}
+			}
+		}
+
+		/**
+		 * Render a token, or start the frames needed for it
+		 * @param token    The token to render
+		 * @param resolver The resolver running this frame
+		 * @return true if a frame has been started, false if the token has been rendered
+		 * @throws ReplacementLimitReachedException when the limit is reached
+		 */
+		private boolean renderToken(Token token, Resolver resolver) throws ReplacementLimitReachedException {
+			switch(token.type) {
+				case INDEX:
+					return renderIndex(token, resolver);
+				case NAME:
+					return renderName(token, resolver);
+				case LANGUAGE:
+					if(languageReplacements && message.doLanguageReplacements) {
+						return renderLanguage(token, resolver);
+					}
+					target.append(token.text);
+					return false;
+				default:
+					target.append(token.text);
+					return false;
+			}
+		}
+
+		/**
+		 * Render an indexed variable like %0%
+		 * @param token    The token of the variable
+		 * @param resolver The resolver running this frame
+		 * @return true if a frame has been started, false if the token has been rendered
+		 * @throws ReplacementLimitReachedException when the limit is reached
+		 */
+		private boolean renderIndex(Token token, Resolver resolver) throws ReplacementLimitReachedException {
+			if(message.indexedReplacements == null || token.index >= message.indexedReplacements.length) {
+				target.append(token.text);
+				return false;
+			}
+
+			Object replacement = message.indexedReplacements[token.index];
+			if(replacement == null) {
+				Log.warn("null replacement for message", resolver.limit.message, "at index", token.index);
+				// Insert an empty string to ensure the variable will be removed from the message
+				replacement = "";
+			}
+			return insertReplacement(replacement, resolver);
+		}
+
+		/**
+		 * Render a named variable like %name%
+		 * @param token    The token of the variable
+		 * @param resolver The resolver running this frame
+		 * @return true if a frame has been started, false if the token has been rendered
+		 * @throws ReplacementLimitReachedException when the limit is reached
+		 */
+		private boolean renderName(Token token, Resolver resolver) throws ReplacementLimitReachedException {
+			if(message.replacementProviders != null) {
+				for(ReplacementProvider provider : message.replacementProviders) {
+					Object toInsert = resolver.provide(provider, token.name);
+					if(toInsert != null) {
+						return insertReplacement(toInsert, resolver);
+					}
+				}
+			}
+			target.append(token.text);
+			return false;
+		}
+
+		/**
+		 * Render a language variable like %lang:key|argument|%
+		 * @param token    The token of the variable
+		 * @param resolver The resolver running this frame
+		 * @return true because frames are started to render the inserted message
+		 * @throws ReplacementLimitReachedException when the limit is reached
+		 */
+		private boolean renderLanguage(Token token, Resolver resolver) throws ReplacementLimitReachedException {
+			resolver.limit.decrease();
+			resolver.limit.checkDeadline(Limit.Phase.LANGUAGE, token.name);
+			insert = Message.fromKey(token.name);
+			if(token.arguments != null) {
+				argumentTokens = token.arguments;
+				arguments = new Message[argumentTokens.length];
+				argument = 0;
+				if(startArgument(resolver)) {
+					return true;
+				}
+				insert.replacements((Object[])arguments);
+				insertFrame = resolver.pushLanguage(insert, null);
+			} else {
+				insertFrame = resolver.pushLanguage(insert, token.name);
+			}
+			state = INSERT_DONE;
+			return true;
+		}
+
+		/**
+		 * Start rendering the next argument of a language variable
+		 * @param resolver The resolver running this frame
+		 * @return true if a frame has been started, false if all arguments are done
+		 */
+		private boolean startArgument(Resolver resolver) {
+			if(argument >= arguments.length) {
+				return false;
+			}
+			argumentTarget = new RenderTarget(true);
+			resolver.push(new TokensFrame(argumentTokens[argument], message, argumentTarget, false));
+			state = ARGUMENT_DONE;
+			return true;
+		}
+
+		/**
+		 * Insert the value of a replacement
+		 * @param toInsert The value to insert
+		 * @param resolver The resolver running this frame
+		 * @return true if a frame has been started, false if the value has been inserted
+		 * @throws ReplacementLimitReachedException when the limit is reached
+		 */
+		private boolean insertReplacement(Object toInsert, Resolver resolver) throws ReplacementLimitReachedException {
+			// Insert another Message
+			if(toInsert instanceof Message) {
+				resolver.limit.decrease();
+				insert = (Message)toInsert;
+				resolver.limit.checkDeadline(Limit.Phase.REPLACEMENT, insert.getKey());
+				insertFrame = resolver.push(new MessageFrame(insert, null));
+				state = insert.inline ? INLINE_DONE : INSERT_DONE;
+				return true;
+			}
+
+			// Insert a simple string, assuming this might be user input, therefore escaping it
+			target.append(YamlParser.escape(toInsert.toString()));
+			return false;
+		}
+	}
+
+	/**
+	 * Split a line into tokens, finding all variables in a single pass over the characters
+	 * @param line The line to split
+	 * @return The tokens of the line
+	 */
+	private static Token[] tokenize(String line) {
+		List<Token> tokens = new ArrayList<>();
+		int literalStart = 0;
+		int at = line.indexOf(Message.VARIABLE_START);
+		while(at != -1) {
+			Token token = null;
+			int end = matchLanguageVariable(line, at);
+			if(end != -1) {
+				token = Token.language(line.substring(at, end));
+			} else {
+				end = matchVariable(line, at);
+				if(end != -1) {
+					String variable = line.substring(at, end);
+					String content = variable.substring(Message.VARIABLE_START.length(), variable.length()-Message.VARIABLE_END.length());
+					if(isDigit(content.charAt(0))) {
+						token = new Token(TokenType.INDEX, variable, Integer.parseInt(content), null, null);
+					} else {
+						token = new Token(TokenType.NAME, variable, -1, content, null);
+					}
+				}
+			}
+
+			// No variable here, or an escaped one that should stay as-is
+			if(token == null) {
+				at = line.indexOf(Message.VARIABLE_START, at+1);
+				continue;
+			}
+			if(at > 0 && line.charAt(at-1) == YamlParser.ESCAPE_CHAR) {
+				// The closing '%' can start the next variable, like %1% in \%0%1%
+				at = line.indexOf(Message.VARIABLE_START, end-Message.VARIABLE_END.length());
+				continue;
+			}
+
+			if(at > literalStart) {
+				tokens.add(Token.literal(line.substring(literalStart, at)));
+			}
+			tokens.add(token);
+			literalStart = end;
+			at = line.indexOf(Message.VARIABLE_START, end);
+		}
+		if(literalStart < line.length()) {
+			tokens.add(Token.literal(line.substring(literalStart)));
+		}
+		return tokens.toArray(new Token[tokens.size()]);
+	}
+
+	/**
+	 * Match an indexed variable (like %0%) or named variable (like %name%)
+	 * @param line  The line to match in
+	 * @param start The position of the variable start
+	 * @return The end of the variable, or -1 if there is no variable at the start position
+	 */
+	private static int matchVariable(String line, int start) {
+		int at = start+Message.VARIABLE_START.length();
+		if(at >= line.length()) {
+			return -1;
+		}
+
+		int contentStart = at;
+		if(isDigit(line.charAt(at))) {
+			// Index without leading zeros
+			at++;
+			if(line.charAt(contentStart) != '0') {
+				while(at < line.length() && isDigit(line.charAt(at))) {
+					at++;
+				}
+			}
+		} else {
+			while(at < line.length() && isLetter(line.charAt(at))) {
+				at++;
+			}
+		}
+
+		if(at == contentStart || !line.startsWith(Message.VARIABLE_END, at)) {
+			return -1;
+		}
+		return at+Message.VARIABLE_END.length();
+	}
+
+	/**
+	 * Match a language variable (like %lang:key% or %lang:key|argument|%)
+	 * @param line  The line to match in
+	 * @param start The position of the variable start
+	 * @return The end of the variable, or -1 if there is no language variable at the start position
+	 */
+	private static int matchLanguageVariable(String line, int start) {
+		int at = start+Message.VARIABLE_START.length();
+		if(!line.startsWith(Message.LANGUAGE_KEY_PREFIX, at)) {
+			return -1;
+		}
+
+		// Key
+		at += Message.LANGUAGE_KEY_PREFIX.length();
+		int keyStart = at;
+		while(at < line.length() && (isLetter(line.charAt(at)) || line.charAt(at) == '-')) {
+			at++;
+		}
+		if(at == keyStart || at >= line.length()) {
+			return -1;
+		}
+
+		// Without arguments
+		if(line.startsWith(Message.VARIABLE_END, at)) {
+			return at+Message.VARIABLE_END.length();
+		}
+
+		// With arguments, ends at the first '|' followed by the variable end, arguments cannot span multiple lines
+		if(line.charAt(at) != '|') {
+			return -1;
+		}
+		for(at++; at < line.length(); at++) {
+			char c = line.charAt(at);
+			if(c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029') {
+				return -1;
+			}
+			if(c == '|' && line.startsWith(Message.VARIABLE_END, at+1)) {
+				return at+1+Message.VARIABLE_END.length();
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Check if a character is an ASCII letter
+	 * @param c The character to check
+	 * @return true if the character is in a-z or A-Z, otherwise false
+	 */
+	private static boolean isLetter(char c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+	}
+
+	/**
+	 * Check if a character is an ASCII digit
+	 * @param c The character to check
+	 * @return true if the character is in 0-9, otherwise false
+	 */
+	private static boolean isDigit(char c) {
+		return c >= '0' && c <= '9';
+	}
+
+	/**
+	 * Type of a token
+	 */
+	private enum TokenType {
+		LITERAL,
+		INDEX,
+		NAME,
+		LANGUAGE
+	}
+
+	/**
+	 * Part of a line, either literal text or a variable
+	 */
+	private static class Token {
+		final TokenType type;
+		final String text;
+		final int index;
+		final String name;
+		final Token[][] arguments;
+
+		/**
+		 * Constructor
+		 * @param type      The type of token
+		 * @param text      The literal text, or the variable as written in the message
+		 * @param index     The index of an indexed variable
+		 * @param name      The name of a named variable or the key of a language variable
+		 * @param arguments The tokens of the arguments of a language variable, or null if it has none
+		 */
+		Token(TokenType type, String text, int index, String name, Token[][] arguments) {
+			this.type = type;
+			this.text = text;
+			this.index = index;
+			this.name = name;
+			this.arguments = arguments;
+		}
+
+		/**
+		 * Create a literal token
+		 * @param text The text of the token
+		 * @return The token
+		 */
+		static Token literal(String text) {
+			return new Token(TokenType.LITERAL, text, -1, null, null);
+		}
+
+		/**
+		 * Create a language variable token
+		 * @param variable The language variable as written in the message
+		 * @return The token
+		 */
+		static Token language(String variable) {
+			String key;
+			Token[][] arguments = null;
+			int keyStart = Message.VARIABLE_START.length()+Message.LANGUAGE_KEY_PREFIX.length();
+			int argumentsStart = variable.indexOf("|");
+			if(argumentsStart != -1) {
+				key = variable.substring(keyStart, argumentsStart);
+				String[] stringArguments = variable.substring(argumentsStart+1, variable.length()-Message.VARIABLE_END.length()).split("\\|");
+				arguments = new Token[stringArguments.length][];
+				for(int i = 0; i < stringArguments.length; i++) {
+					arguments[i] = tokenize(stringArguments[i]);
+				}
+			} else {
+				key = variable.substring(keyStart, variable.length()-Message.VARIABLE_END.length());
+			}
+			return new Token(TokenType.LANGUAGE, variable, -1, key, arguments);
+		}
+	}
+
+	/**
+	 * A line of the template
+	 */
+	private static class Line {
+		final String raw;
+		final boolean interactive;
+		final Token[] tokens;
+
+		/**
+		 * Constructor
+		 * @param raw         The line as written in the message
+		 * @param interactive true if the line is an interactive line like a hover, otherwise false
+		 * @param tokens      The tokens of the line
+		 */
+		Line(String raw, boolean interactive, Token[] tokens) {
+			this.raw = raw;
+			this.interactive = interactive;
+			this.tokens = tokens;
+		}
+
+		/**
+		 * Check if the line contains variables
+		 * @return true if the line has variables, otherwise false
+		 */
+		boolean hasVariables() {
+			return tokens.length > 1 || (tokens.length == 1 && tokens[0].type != TokenType.LITERAL);
+		}
+	}
+
+	/**
+	 * Collects the rendered output of a line
+	 */
+	private static class RenderTarget {
+		final boolean single;
+		StringBuilder current = new StringBuilder();
+		List<String> result;
+		List<String> interactives;
+		boolean split = false;
+
+		/**
+		 * Constructor
+		 * @param single true to render into a single string (for interactive lines and arguments), false to allow splitting the line
+		 */
+		RenderTarget(boolean single) {
+			this.single = single;
+		}
+
+		/**
+		 * Append text to the current line
+		 * @param text The text to append
+		 */
+		void append(String text) {
+			current.append(text);
+		}
+
+		/**
+		 * Insert lines at the current position, splitting the current line
+		 * @param insert The lines to insert
+		 */
+		void insertLines(List<String> insert) {
+			// Interactive lines cannot be split, insert as formatted text instead
+			if(single) {
+				current.append(ConsoleGenerator.generate(ParseCache.parse(insert)));
+				return;
+			}
+
+			if(current.length() > 0) {
+				result.add(current.toString());
+				result.addAll(interactives);
+				current.setLength(0);
+			}
+			result.addAll(insert);
+			result.addAll(interactives);
+			split = true;
+		}
+
+		/**
+		 * Add the remaining part of the line to the result
+		 */
+		void finish() {
+			if(!split || current.length() > 0) {
+				result.add(current.toString());
+				result.addAll(interactives);
+			}
+		}
+	}
+}
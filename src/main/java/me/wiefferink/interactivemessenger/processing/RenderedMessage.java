@@ -0,0 +1,364 @@
+package me.wiefferink.interactivemessenger.processing;
+
+import me.wiefferink.interactivemessenger.Log;
+import me.wiefferink.interactivemessenger.generators.ConsoleGenerator;
+import me.wiefferink.interactivemessenger.generators.PlainTextGenerator;
+import me.wiefferink.interactivemessenger.generators.TellrawGenerator;
+import me.wiefferink.interactivemessenger.message.CompactMessage;
+import me.wiefferink.interactivemessenger.parsers.ParseCache;
+import me.wiefferink.interactivemessenger.transport.BufferTransport;
+import me.wiefferink.interactivemessenger.transport.ComponentTransport;
+import me.wiefferink.interactivemessenger.transport.MessageTransport;
+import me.wiefferink.interactivemessenger.transport.MultilineSupport;
+import org.apache.commons.lang.exception.ExceptionUtils;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * A message with all replacements done, ready to be send
+ * Parsing and generating is done once and the result is reused for every target it is send to
+ */
+public class RenderedMessage {
+
+	private final String key;
+	private final List<String> lines;
+
+	private CompactMessage parsed;
+	private List<String> tellraw;
+	private boolean tellrawTooBig;
+	private List<String> tellrawMultiline;
+	private boolean tellrawMultilineTooBig;
+	private boolean reportedTooBig = false;
+	// Components converted from the JSON by a ComponentTransport, index 0 for tellraw and 1 for tellrawMultiline
+	private final Object[][] components = new Object[2][];
+	private final ComponentTransport[] componentsTransport = new ComponentTransport[2];
+	private String plain;
+	private String stripped;
+
+	/**
+	 * Constructor
+	 * @param key   The key of the message this is rendered from, or null if none
+	 * @param lines The lines of the message with all replacements done
+	 */
+	RenderedMessage(String key, List<String> lines) {
+		this.key = key;
+		this.lines = Collections.unmodifiableList(new ArrayList<>(lines));
+	}
+
+	/**
+	 * Get the key of the message this is rendered from
+	 * @return Key of the message, or null if none
+	 */
+	public String getKey() {
+		return key;
+	}
+
+	/**
+	 * Get the lines with all replacements done
+	 * @return The lines of the message
+	 */
+	public List<String> getLines() {
+		return lines;
+	}
+
+	/**
+	 * Get the parsed message
+	 * @return The lines parsed into a CompactMessage, shared with other users
+	 */
+	public CompactMessage getParsed() {
+		if(parsed == null) {
+			parsed = ParseCache.parse(lines);
+		}
+		return parsed;
+	}
+
+	/**
+	 * Get the JSON strings to send to a player with tellraw
+	 * Lines that are too long for the client are split into multiple JSON strings, without breaking clicks and hovers.
+	 * @return JSON strings, one for each line or piece of a line (incomplete when the message cannot be split small enough)
+	 */
+	public List<String> getTellraw() {
+		if(tellraw == null) {
+			TellrawGenerator generator = TellrawGenerator.acquire();
+			try {
+				generateTellraw(generator, false);
+				tellrawTooBig = generator.isTooBig();
+				tellraw = generator.getResult();
+			} finally {
+				generator.release();
+			}
+		}
+		return tellraw;
+	}
+
+	/**
+	 * Get the JSON strings to send to a player with tellraw, with all lines in a single component
+	 * Only for clients that support line breaks inside components (1.8 and later).
+	 * @return JSON strings, more than one only when the message is too long for the client (incomplete when the message cannot be split small enough)
+	 */
+	public List<String> getTellrawMultiline() {
+		if(tellrawMultiline == null) {
+			TellrawGenerator generator = TellrawGenerator.acquire();
+			try {
+				generateTellraw(generator, true);
+				tellrawMultilineTooBig = generator.isTooBig();
+				tellrawMultiline = generator.getResult();
+			} finally {
+				generator.release();
+			}
+		}
+		return tellrawMultiline;
+	}
+
+	/**
+	 * Get the components to send to a player, converted from the JSON once and reused for all players
+	 * @param transport The transport to convert the JSON with
+	 * @param multiline true to get the components of {@link #getTellrawMultiline()}, false for {@link #getTellraw()}
+	 * @return The components, entries are null when converting failed
+	 */
+	private Object[] getComponents(ComponentTransport transport, boolean multiline) {
+		int index = multiline ? 1 : 0;
+		if(components[index] == null || componentsTransport[index] != transport) {
+			List<String> jsonMessages = getTellraw(multiline);
+			Object[] result = new Object[jsonMessages.size()];
+			for(int i = 0; i < result.length; i++) {
+				result[i] = transport.toComponent(jsonMessages.get(i));
+			}
+			components[index] = result;
+			componentsTransport[index] = transport;
+		}
+		return components[index];
+	}
+
+	/**
+	 * Get the JSON strings to send to a player with tellraw
+	 * @param multiline true to get {@link #getTellrawMultiline()}, false to get {@link #getTellraw()}
+	 * @return JSON strings
+	 */
+	private List<String> getTellraw(boolean multiline) {
+		return multiline ? getTellrawMultiline() : getTellraw();
+	}
+
+	/**
+	 * Generate the JSON of this message
+	 * @param generator The generator to use
+	 * @param multiline true to generate a single component with line breaks, false for a JSON line for each line
+	 */
+	private void generateTellraw(TellrawGenerator generator, boolean multiline) {
+		generator.maximumLength(Message.MAXIMUMJSONLENGTH).singleComponent(multiline);
+		getParsed().accept(generator);
+	}
+
+	/**
+	 * Get the message as string with native formatting codes
+	 * @return The message as simple string
+	 */
+	public String getPlain() {
+		if(plain == null) {
+			plain = ConsoleGenerator.generate(getParsed());
+		}
+		return plain;
+	}
+
+	/**
+	 * Get the message as string without any formatting
+	 * @return The message as simple string without formatting codes
+	 */
+	public String getStripped() {
+		if(stripped == null) {
+			stripped = PlainTextGenerator.generate(getParsed());
+		}
+		return stripped;
+	}
+
+	/**
+	 * Do all parsing and generating that sending might need
+	 * After this the message can be send from another thread without doing any work there
+	 * @return this
+	 */
+	public RenderedMessage prepare() {
+		if(Message.useInteractiveMessages) {
+			MessageTransport transport = Message.transport;
+			getTellraw();
+			if(transport instanceof ComponentTransport && !tellrawTooBig) {
+				getComponents((ComponentTransport)transport, false);
+			}
+			if(Message.multilineSupport != null) {
+				getTellrawMultiline();
+				if(transport instanceof ComponentTransport && !tellrawMultilineTooBig) {
+					getComponents((ComponentTransport)transport, true);
+				}
+			}
+		}
+		getPlain();
+		// Used for the console, loggers, writers and senders without color support
+		getStripped();
+		return this;
+	}
+
+	/**
+	 * Check if the message is empty
+	 * @return true if there is nothing to send, otherwise false
+	 */
+	public boolean isEmpty() {
+		return lines.isEmpty() || (lines.size() == 1 && lines.get(0).length() == 0);
+	}
+
+	/**
+	 * Send the message to multiple targets, should be called from the main server thread
+	 * @param targets The targets to send the message to (Player, CommandSender, Logger)
+	 */
+	public void broadcast(Iterable<?> targets) {
+		if(isEmpty() || targets == null) {
+			return;
+		}
+		TellrawGenerator[] generators = new TellrawGenerator[2];
+		try {
+			for(Object target : targets) {
+				send(target, generators);
+			}
+		} finally {
+			release(generators);
+		}
+	}
+
+	/**
+	 * Send the message to a target, should be called from the main server thread
+	 * @param target The target to send the message to (Player, CommandSender, Logger)
+	 */
+	public void send(Object target) {
+		if(isEmpty()) {
+			return;
+		}
+		TellrawGenerator[] generators = new TellrawGenerator[2];
+		try {
+			send(target, generators);
+		} finally {
+			release(generators);
+		}
+	}
+
+	/**
+	 * Hand back the generators used for sending
+	 * @param generators The generators to release, entries can be null
+	 */
+	private static void release(TellrawGenerator[] generators) {
+		for(TellrawGenerator generator : generators) {
+			if(generator != null) {
+				generator.release();
+			}
+		}
+	}
+
+	/**
+	 * Send the message to a target
+	 * @param target     The target to send the message to (Player, CommandSender, Logger)
+	 * @param generators Generators containing the JSON of this message for each line (index 0) and as single component (index 1),
+	 *                   entries are null if not generated yet and will be set when a generator is acquired
+	 */
+	private void send(Object target, TellrawGenerator[] generators) {
+		if(target == null) {
+			return;
+		}
+		if(target instanceof Player) {
+			boolean sendPlain = true;
+			MessageTransport transport = Message.transport;
+			if(Message.useInteractiveMessages && Message.fancyWorks) {
+				try {
+					boolean result = true;
+					MultilineSupport multilineSupport = Message.multilineSupport;
+					boolean multiline = multilineSupport != null && multilineSupport.supportsMultiline((Player)target);
+					if(transport instanceof ComponentTransport) {
+						// Send components that are converted once for all players
+						ComponentTransport componentTransport = (ComponentTransport)transport;
+						getTellraw(multiline);
+						if(multiline ? tellrawMultilineTooBig : tellrawTooBig) {
+							logTooBig();
+							return;
+						}
+						for(Object component : getComponents(componentTransport, multiline)) {
+							result &= componentTransport.sendComponent((Player)target, component);
+						}
+					} else if((multiline ? tellrawMultiline : tellraw) == null && transport instanceof BufferTransport) {
+						// Send straight from the generator buffers, without creating strings
+						int index = multiline ? 1 : 0;
+						if(generators[index] == null) {
+							generators[index] = TellrawGenerator.acquire();
+							generateTellraw(generators[index], multiline);
+						}
+						TellrawGenerator generator = generators[index];
+						if(generator.isTooBig()) {
+							logTooBig();
+							return;
+						}
+						for(int i = 0; i < generator.getLineCount(); i++) {
+							result &= ((BufferTransport)transport).sendJson((Player)target, generator.getLine(i));
+						}
+					} else {
+						List<String> jsonMessages = getTellraw(multiline);
+						if(multiline ? tellrawMultilineTooBig : tellrawTooBig) {
+							logTooBig();
+							return;
+						}
+						for(String jsonMessage : jsonMessages) {
+							result &= transport.sendJson((Player)target, jsonMessage);
+						}
+					}
+					sendPlain = !result;
+					Message.fancyWorks = result;
+				} catch(Exception e) {
+					Message.fancyWorks = false;
+					Log.error("Sending fancy message did not work, falling back to plain messages. Message key:", key, ", error:", ExceptionUtils.getStackTrace(e));
+				}
+			}
+			if(sendPlain) { // Fancy messages disabled or broken
+				transport.sendPlain((Player)target, getPlain());
+			}
+		} else {
+			// Send to the target
+			if(target instanceof CommandSender) {
+				// Strip colors if disabled
+				if(Message.useColorsInConsole) {
+					((CommandSender)target).sendMessage(getPlain());
+				} else {
+					((CommandSender)target).sendMessage(getStripped());
+				}
+			} else if(target instanceof Logger) {
+				((Logger)target).info(getStripped());
+			} else if(target instanceof BufferedWriter) {
+				try {
+					((BufferedWriter)target).write(getStripped());
+					((BufferedWriter)target).newLine();
+				} catch(IOException e) {
+					Log.warn("Exception while writing to BufferedWriter:", ExceptionUtils.getStackTrace(e));
+				}
+			} else {
+				Log.warn("Could not send message (key: " + key + ") because the target (" + target.getClass().getName() + ") is not recognized, message: " + getPlain());
+			}
+		}
+	}
+
+	/**
+	 * Log that the message cannot be send because a click or hover results in JSON that is too big
+	 * Only logged once, even when sending to multiple players.
+	 */
+	private void logTooBig() {
+		if(reportedTooBig) {
+			return;
+		}
+		reportedTooBig = true;
+		Log.error("Message with key", key, "could not be send, results in a JSON string that is too big to send to the client, start of the message:", Message.getMessageStart(lines, 200));
+	}
+
+	@Override
+	public String toString() {
+		return "RenderedMessage(key:"+key+", lines:"+lines+")";
+	}
+}
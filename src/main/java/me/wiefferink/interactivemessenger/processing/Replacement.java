@@ -15,6 +15,37 @@ public class Replacement {
 		};
 	}
 
+	/**
+	 * Mark a replacement returned by a ReplacementProvider as volatile
+	 * The results of providers are remembered while doing the replacements of a message, so a variable that is used
+	 * multiple times is only requested once. Volatile replacements are requested again for each use.
+	 * @param replacement The replacement to return from the provider
+	 * @return The marked replacement
+	 */
+	public static Object uncached(Object replacement) {
+		return new Uncached(replacement);
+	}
+
+	/**
+	 * Replacement that should not be remembered
+	 */
+	static class Uncached {
+		final Object replacement;
+
+		/**
+		 * Constructor
+		 * @param replacement The replacement
+		 */
+		Uncached(Object replacement) {
+			this.replacement = replacement;
+		}
+
+		@Override
+		public String toString() {
+			return String.valueOf(replacement);
+		}
+	}
+
 	public static ReplacementProvider prefix(final String prefix, final ReplacementProvider provider) {
 		return new ReplacementProvider() {
 			@Override
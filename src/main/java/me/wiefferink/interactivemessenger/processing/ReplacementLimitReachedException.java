@@ -2,12 +2,50 @@ package me.wiefferink.interactivemessenger.processing;
 
 public class ReplacementLimitReachedException extends Exception {
 	private Limit limit;
+	private Limit.Phase phase;
+	private String key;
 
 	public ReplacementLimitReachedException(Limit limit) {
 		this.limit = limit;
 	}
 
+	/**
+	 * Constructor for running past the deadline of a limit
+	 * @param limit The limit that has been reached
+	 * @param phase The step of replacing that was running when the deadline passed
+	 * @param key   The key or variable name the step was for
+	 */
+	public ReplacementLimitReachedException(Limit limit, Limit.Phase phase, String key) {
+		this.limit = limit;
+		this.phase = phase;
+		this.key = key;
+	}
+
 	public Limit getLimit() {
 		return limit;
 	}
+
+	/**
+	 * Check if the deadline of the limit has passed, instead of running out of replacements
+	 * @return true if replacing took too long, otherwise false
+	 */
+	public boolean isTimedOut() {
+		return phase != null;
+	}
+
+	/**
+	 * Get the step of replacing that was running when the deadline passed
+	 * @return The phase, or null if the number of replacements has been reached
+	 */
+	public Limit.Phase getPhase() {
+		return phase;
+	}
+
+	/**
+	 * Get the key or variable name that was being replaced when the deadline passed
+	 * @return The key, or null if the number of replacements has been reached
+	 */
+	public String getKey() {
+		return key;
+	}
 }
@@ -6,6 +6,9 @@ package me.wiefferink.interactivemessenger.processing;
 public interface ReplacementProvider {
 	/**
 	 * Get the replacement for a variable
+	 * The result is remembered while doing the replacements of a message, return {@link Replacement#uncached(Object)}
+	 * for replacements that should be requested again for each use of the variable.
+	 * Code that calls a provider directly can get such a wrapped replacement, its toString() gives the string of the replacement.
 	 * @param variable The variable to replace
 	 * @return The replacement for the variable, or null if it has no replacement for it
 	 */
@@ -0,0 +1,18 @@
+package me.wiefferink.interactivemessenger.source;
+
+import java.util.List;
+
+/**
+ * Provide messages based on keys, and a version of them that is prepared for rendering
+ */
+public interface ExpandedMessageProvider extends MessageProvider {
+
+	/**
+	 * Get the message that is linked to the specified key, with language variables without arguments (like %lang:key%)
+	 * replaced by the message they refer to
+	 * Only used when language replacements are done, so rendering gives the same result as with {@link #getMessage(String)}.
+	 * @param key The key of the message to get
+	 * @return A list with the lines of the message, will not be modified by the caller (so it can be shared)
+	 */
+	List<String> getExpandedMessage(String key);
+}
@@ -0,0 +1,189 @@
+package me.wiefferink.interactivemessenger.source;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Binary cache of the messages of a language file, to skip parsing the YAML when the file did not change
+ * <p>
+ * The cache is stored next to the language file with {@link #EXTENSION} appended to its name.
+ * It is only used when the size, modification time and CRC32 checksum of the language file are still the same as when the cache was written.
+ * Layout (big-endian): magic, version, size, mtime, checksum, key count, then for each key: the key, line count and lines.
+ * Strings are stored as the length of their UTF-8 bytes followed by the bytes, -1 for null.
+ */
+public class LanguageCache {
+
+	/**
+	 * Appended to the name of the language file to get the name of the cache file
+	 */
+	public static final String EXTENSION = ".cache";
+
+	private static final int MAGIC = 0x494D4C43; // IMLC
+	private static final int VERSION = 1;
+
+	/**
+	 * Get the cache file of a language file
+	 * @param languageFile The language file
+	 * @return The file the cache of the language file is stored in
+	 */
+	public static File getCacheFile(File languageFile) {
+		return new File(languageFile.getPath()+EXTENSION);
+	}
+
+	/**
+	 * Read the cached messages of a language file
+	 * @param languageFile The language file to get the messages for
+	 * @return The messages of the language file, or null if there is no valid cache for the current content of the file
+	 */
+	public static Map<String, List<String>> read(File languageFile) {
+		File cacheFile = getCacheFile(languageFile);
+		if(!cacheFile.isFile() || !languageFile.isFile()) {
+			return null;
+		}
+
+		try {
+			// Read into memory instead of mapping the file, a mapped file cannot be replaced on Windows until it is unmapped
+			ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(cacheFile.toPath()));
+			if(buffer.getInt() != MAGIC
+					|| buffer.getInt() != VERSION
+					|| buffer.getLong() != languageFile.length()
+					|| buffer.getLong() != languageFile.lastModified()
+					|| buffer.getInt() != checksum(languageFile)) {
+				return null;
+			}
+
+			int keyCount = buffer.getInt();
+			Map<String, List<String>> result = new HashMap<>(keyCount*4/3+1);
+			byte[] bytes = new byte[256];
+			for(int key = 0; key < keyCount; key++) {
+				String messageKey = readString(buffer, bytes);
+				int lineCount = buffer.getInt();
+				List<String> lines = new ArrayList<>(lineCount);
+				for(int line = 0; line < lineCount; line++) {
+					lines.add(readString(buffer, bytes));
+				}
+				result.put(messageKey, lines);
+			}
+			if(buffer.hasRemaining()) {
+				return null;
+			}
+			return result;
+		} catch(IOException | BufferUnderflowException | IllegalArgumentException e) {
+			// Broken or unreadable cache, the language file will be parsed instead
+			return null;
+		}
+	}
+
+	/**
+	 * Write the messages of a language file to its cache
+	 * @param languageFile The language file the messages have been loaded from
+	 * @param messages     The messages loaded from the language file
+	 * @return true if the cache has been written, otherwise false
+	 */
+	public static boolean write(File languageFile, Map<String, List<String>> messages) {
+		File cacheFile = getCacheFile(languageFile);
+		File tempFile = new File(cacheFile.getPath()+".tmp");
+		try {
+			// Get the state of the language file before writing, a change while writing makes the cache invalid instead of wrong
+			long length = languageFile.length();
+			long lastModified = languageFile.lastModified();
+			int checksum = checksum(languageFile);
+
+			try(DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+				output.writeInt(MAGIC);
+				output.writeInt(VERSION);
+				output.writeLong(length);
+				output.writeLong(lastModified);
+				output.writeInt(checksum);
+				output.writeInt(messages.size());
+				for(Map.Entry<String, List<String>> message : messages.entrySet()) {
+					writeString(output, message.getKey());
+					output.writeInt(message.getValue().size());
+					for(String line : message.getValue()) {
+						writeString(output, line);
+					}
+				}
+			}
+
+			// Replace at once, readers never see a partially written cache
+			try {
+				Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch(IOException e) {
+				Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+			return true;
+		} catch(IOException e) {
+			tempFile.delete();
+			return false;
+		}
+	}
+
+	/**
+	 * Calculate the checksum of the content of a file
+	 * @param file The file to calculate it for
+	 * @return CRC32 checksum of the file
+	 * @throws IOException When reading the file fails
+	 */
+	private static int checksum(File file) throws IOException {
+		CRC32 crc = new CRC32();
+		byte[] bytes = new byte[8192];
+		try(InputStream input = new FileInputStream(file)) {
+			int read;
+			while((read = input.read(bytes)) != -1) {
+				crc.update(bytes, 0, read);
+			}
+		}
+		return (int)crc.getValue();
+	}
+
+	/**
+	 * Write a string as length and UTF-8 bytes
+	 * @param output The output to write to
+	 * @param value  The string to write, can be null
+	 * @throws IOException When writing fails
+	 */
+	private static void writeString(DataOutputStream output, String value) throws IOException {
+		if(value == null) {
+			output.writeInt(-1);
+			return;
+		}
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		output.writeInt(bytes.length);
+		output.write(bytes);
+	}
+
+	/**
+	 * Read a string written by {@link #writeString(DataOutputStream, String)}
+	 * @param buffer The buffer to read from
+	 * @param bytes  Buffer to copy the bytes into, a new one is used for longer strings
+	 * @return The string that has been read, can be null
+	 */
+	private static String readString(ByteBuffer buffer, byte[] bytes) {
+		int length = buffer.getInt();
+		if(length < 0) {
+			return null;
+		}
+		if(length > buffer.remaining()) {
+			throw new BufferUnderflowException();
+		}
+		byte[] target = length <= bytes.length ? bytes : new byte[length];
+		buffer.get(target, 0, length);
+		return new String(target, 0, length, StandardCharsets.UTF_8);
+	}
+
+}
@@ -0,0 +1,143 @@
+package me.wiefferink.interactivemessenger.source;
+
+import me.wiefferink.interactivemessenger.processing.MessageTemplate;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Graph of the messages that include other messages with language variables like %lang:key%
+ * Used when loading a language to find loops before a message is sent, and to replace language variables without
+ * arguments by the message they refer to, so that rendering does not need to insert them each time.
+ */
+public class LanguageGraph {
+
+	private final Map<String, List<String>> messages;
+	private final Map<String, List<String>> references = new HashMap<>();
+	// Keys ordered so that messages come after the messages they include
+	private final List<String> order = new ArrayList<>();
+	private final List<List<String>> loops = new ArrayList<>();
+	private final Set<String> inLoop = new HashSet<>();
+
+	/**
+	 * Constructor, builds the graph
+	 * @param messages The messages of a language by key
+	 */
+	public LanguageGraph(Map<String, List<String>> messages) {
+		this.messages = messages;
+		for(Map.Entry<String, List<String>> message : messages.entrySet()) {
+			references.put(message.getKey(), MessageTemplate.getLanguageReferences(message.getValue()));
+		}
+		findComponents();
+	}
+
+	/**
+	 * Get the loops of messages that include each other, these will reach the replacement limit when sent
+	 * @return Each loop as the list of keys in it
+	 */
+	public List<List<String>> getLoops() {
+		return loops;
+	}
+
+	/**
+	 * Get the messages with language variables without arguments replaced by the message they refer to
+	 * Messages in loops and variables referring to unknown keys are kept as-is.
+	 * @return The expanded messages by key
+	 */
+	public Map<String, List<String>> expand() {
+		Map<String, List<String>> result = new HashMap<>(messages);
+		// Messages that are complete after expanding, these can be inserted into other messages
+		Map<String, List<String>> expansions = new HashMap<>();
+		for(String key : order) {
+			if(inLoop.contains(key)) {
+				continue;
+			}
+			List<String> lines = MessageTemplate.expandLanguageVariables(messages.get(key), expansions);
+			result.put(key, lines);
+			if(MessageTemplate.getLanguageReferences(lines).isEmpty()) {
+				expansions.put(key, lines);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Find the strongly connected components with Tarjan's algorithm, without recursion to support long chains
+	 * Components are found after the components they refer to, which gives the expansion order.
+	 */
+	private void findComponents() {
+		Map<String, Integer> index = new HashMap<>();
+		Map<String, Integer> lowLink = new HashMap<>();
+		Deque<String> component = new ArrayDeque<>();
+		Set<String> onComponent = new HashSet<>();
+		Deque<String> path = new ArrayDeque<>();
+		Deque<Iterator<String>> pathReferences = new ArrayDeque<>();
+
+		for(String root : messages.keySet()) {
+			if(index.containsKey(root)) {
+				continue;
+			}
+			String next = root;
+			while(next != null || !path.isEmpty()) {
+				// Visit a new key
+				if(next != null) {
+					index.put(next, index.size());
+					lowLink.put(next, index.get(next));
+					component.push(next);
+					onComponent.add(next);
+					path.push(next);
+					pathReferences.push(references.get(next).iterator());
+					next = null;
+					continue;
+				}
+
+				String key = path.peek();
+				Iterator<String> keyReferences = pathReferences.peek();
+				if(keyReferences.hasNext()) {
+					String reference = keyReferences.next();
+					if(!messages.containsKey(reference)) {
+						// Missing messages are reported when rendering
+						continue;
+					}
+					if(!index.containsKey(reference)) {
+						next = reference;
+					} else if(onComponent.contains(reference)) {
+						lowLink.put(key, Math.min(lowLink.get(key), index.get(reference)));
+					}
+					continue;
+				}
+
+				// All references done, update the parent and collect the component if this is its root
+				path.pop();
+				pathReferences.pop();
+				if(!path.isEmpty()) {
+					lowLink.put(path.peek(), Math.min(lowLink.get(path.peek()), lowLink.get(key)));
+				}
+				if(lowLink.get(key).equals(index.get(key))) {
+					List<String> keys = new ArrayList<>();
+					String member;
+					do {
+						member = component.pop();
+						onComponent.remove(member);
+						keys.add(member);
+					} while(!member.equals(key));
+					Collections.reverse(keys);
+					order.addAll(keys);
+					if(keys.size() > 1 || references.get(key).contains(key)) {
+						loops.add(keys);
+						inLoop.addAll(keys);
+					}
+				}
+			}
+		}
+	}
+
+}
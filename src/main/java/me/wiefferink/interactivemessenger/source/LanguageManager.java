@@ -4,6 +4,7 @@ import com.google.common.base.Charsets;
 import me.wiefferink.interactivemessenger.Log;
 import me.wiefferink.interactivemessenger.processing.Message;
 import me.wiefferink.interactivemessenger.translation.Transifex;
+import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.exception.ExceptionUtils;
 import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.plugin.java.JavaPlugin;
@@ -16,22 +17,85 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.net.URISyntaxException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.CRC32;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
-public class LanguageManager implements MessageProvider {
+/**
+ * Provides messages from YAML language files in the data folder of a plugin
+ * <p>
+ * The loaded languages can be replaced with {@link #reload()} or {@link #reloadAsync(Executor)}, or automatically when
+ * the files change with {@link #startWatching(long)} (call {@link #stopWatching()} in onDisable() when using this).
+ * Language files are loaded completely before they are used, getMessage() sees either the old or the new messages,
+ * never a mix. Reloads run one at a time, so an older reload never replaces the messages of a newer one.
+ * <p>
+ * When loading, messages that include each other in a loop are reported, and a version of the messages with language
+ * variables without arguments (like %lang:key%) replaced by the message they refer to is prepared for rendering.
+ * getMessage() returns the messages as they are in the files, so Message#noLanguageReplacements() keeps those variables.
+ */
+public class LanguageManager implements ExpandedMessageProvider {
+	private static final String DEFAULTS_MANIFEST = ".defaults";
+
 	private JavaPlugin plugin;
-	private Map<String, List<String>> currentLanguage, defaultLanguage;
+	private final AtomicReference<Languages> languages = new AtomicReference<>();
+	// Held while loading and setting languages, so that an older load cannot replace the result of a newer one
+	private final Object reloadLock = new Object();
 	private File languageFolder;
 	private String jarLanguagePath;
 	private List<String> chatPrefix;
 
+	// Watching the language folder for changes
+	private final Object watchLock = new Object();
+	private WatchService watchService;
+	private Thread watchThread;
+
+	/**
+	 * Messages of the current and default language, replaced as a whole when reloading
+	 */
+	private static class Languages {
+		private final String currentLanguageName, defaultLanguageName;
+		// All messages by key: the chat prefix, the current language and the default language for missing keys
+		private final Map<String, List<String>> messages;
+		// The same messages with language variables without arguments replaced by the message they refer to
+		private final Map<String, List<String>> expandedMessages;
+
+		/**
+		 * Constructor
+		 * @param currentLanguageName The name of the current language
+		 * @param defaultLanguageName The name of the default language
+		 * @param messages            The messages of both languages combined, with unmodifiable lists
+		 * @param expandedMessages    The messages with language variables without arguments replaced, with unmodifiable lists
+		 */
+		private Languages(String currentLanguageName, String defaultLanguageName, Map<String, List<String>> messages, Map<String, List<String>> expandedMessages) {
+			this.currentLanguageName = currentLanguageName;
+			this.defaultLanguageName = defaultLanguageName;
+			this.messages = messages;
+			this.expandedMessages = expandedMessages;
+		}
+	}
+
 	/**
 	 * Constructor
 	 * @param plugin The plugin creating this LanguageManager (used for logging and finding the language files in the jar)
@@ -43,43 +107,200 @@ public class LanguageManager implements MessageProvider {
 	public LanguageManager(JavaPlugin plugin, String jarLanguagePath, String currentLanguageName, String defaultLanguageName, List<String> chatPrefix) {
 		this.plugin = plugin;
 		this.jarLanguagePath = jarLanguagePath;
-		this.chatPrefix = chatPrefix;
+		this.chatPrefix = chatPrefix == null ? null : Collections.unmodifiableList(new ArrayList<>(chatPrefix));
 		this.languageFolder = new File(plugin.getDataFolder() + File.separator + jarLanguagePath);
 
 		Message.init(this, plugin.getLogger());
 		saveDefaults();
-		currentLanguage = loadLanguage(currentLanguageName);
-		if(defaultLanguageName.equals(currentLanguageName)) {
-			defaultLanguage = currentLanguage;
-		} else {
-			defaultLanguage = loadLanguage(defaultLanguageName);
+		languages.set(loadLanguages(currentLanguageName, defaultLanguageName));
+	}
+
+	/**
+	 * Reload the language files on the current thread, messages will be taken from the new files after this
+	 */
+	public void reload() {
+		synchronized(reloadLock) {
+			Languages old = languages.get();
+			reload(old.currentLanguageName, old.defaultLanguageName);
+		}
+	}
+
+	/**
+	 * Switch to other languages on the current thread, messages will be taken from the new files after this
+	 * @param currentLanguageName The name of the language that should be active (without '.yml')
+	 * @param defaultLanguageName The name of the language to use for messages missing in the current language (without '.yml')
+	 */
+	public void reload(String currentLanguageName, String defaultLanguageName) {
+		synchronized(reloadLock) {
+			languages.set(loadLanguages(currentLanguageName, defaultLanguageName));
+		}
+	}
+
+	/**
+	 * Reload the language files using an executor, so the main server thread does not need to wait for reading the files
+	 * The old messages are used until the new files are loaded completely.
+	 * @param executor The executor to load the files with
+	 * @return Future that completes when the new messages are used
+	 */
+	public Future<Void> reloadAsync(Executor executor) {
+		FutureTask<Void> task = new FutureTask<>(new Callable<Void>() {
+			@Override
+			public Void call() {
+				reload();
+				return null;
+			}
+		});
+		executor.execute(task);
+		return task;
+	}
+
+	/**
+	 * Start watching the language folder, changed language files are reloaded automatically on a background thread
+	 * The thread keeps this LanguageManager and the classes of the plugin loaded until {@link #stopWatching()} is
+	 * called, plugins should call it in onDisable().
+	 * @param debounceMillis Time to wait for more changes before reloading, in milliseconds (editors often write a file multiple times)
+	 * @return true if watching has been started or was already active, false if the folder cannot be watched
+	 */
+	public boolean startWatching(final long debounceMillis) {
+		synchronized(watchLock) {
+			if(watchService != null) {
+				return true;
+			}
+			try {
+				watchService = FileSystems.getDefault().newWatchService();
+				languageFolder.toPath().register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+			} catch(IOException e) {
+				Log.warn("Could not watch the language folder for changes:", languageFolder.getAbsolutePath(), ExceptionUtils.getStackTrace(e));
+				closeWatchService();
+				return false;
+			}
+
+			final WatchService service = watchService;
+			watchThread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					watch(service, debounceMillis);
+				}
+			}, "InteractiveMessenger language watcher");
+			watchThread.setDaemon(true);
+			watchThread.start();
+			return true;
+		}
+	}
+
+	/**
+	 * Stop watching the language folder for changes
+	 */
+	public void stopWatching() {
+		synchronized(watchLock) {
+			closeWatchService();
+			watchThread = null;
+		}
+	}
+
+	/**
+	 * Close the watch service, which stops the watch thread
+	 */
+	private void closeWatchService() {
+		if(watchService == null) {
+			return;
+		}
+		try {
+			watchService.close();
+		} catch(IOException e) {
+			Log.warn("Could not stop watching the language folder:", ExceptionUtils.getStackTrace(e));
+		}
+		watchService = null;
+	}
+
+	/**
+	 * Wait for changes of language files and reload them, runs until the watch service is closed
+	 * @param service        The watch service to take changes from
+	 * @param debounceMillis Time to wait for more changes before reloading, in milliseconds
+	 */
+	private void watch(WatchService service, long debounceMillis) {
+		try {
+			while(true) {
+				WatchKey key = service.take();
+				boolean changed = false;
+				// Collect changes until the folder has been quiet for the debounce time
+				while(key != null) {
+					changed |= isLanguageFileChange(key);
+					if(!key.reset()) {
+						Log.warn("Language folder is not accessible anymore, stopped watching it:", languageFolder.getAbsolutePath());
+						return;
+					}
+					key = service.poll(debounceMillis, TimeUnit.MILLISECONDS);
+				}
+				if(changed) {
+					reload();
+					Log.info("Reloaded language files after they changed");
+				}
+			}
+		} catch(InterruptedException | ClosedWatchServiceException e) {
+			// Stopped watching
+		} catch(Exception e) {
+			Log.error("Watching the language folder failed:", ExceptionUtils.getStackTrace(e));
+		}
+	}
+
+	/**
+	 * Check if a watch key has changes of language files
+	 * @param key The key to check the events of
+	 * @return true if a YAML file has been changed, otherwise false
+	 */
+	private static boolean isLanguageFileChange(WatchKey key) {
+		boolean result = false;
+		for(WatchEvent<?> event : key.pollEvents()) {
+			if(event.kind() == StandardWatchEventKinds.OVERFLOW) {
+				result = true;
+			} else if(event.context() instanceof Path && event.context().toString().endsWith(".yml")) {
+				result = true;
+			}
 		}
+		return result;
 	}
 
 	/**
-	 * Get the message for a certain key (result can be modified)
+	 * Get the message for a certain key (result is shared and cannot be modified)
 	 * @param key The key of the message to get
 	 * @return The message as a list of strings
 	 */
 	@Override
 	public List<String> getMessage(String key) {
-		List<String> message;
-		if(key.equalsIgnoreCase(Message.CHATLANGUAGEVARIABLE)) {
+		return getMessage(languages.get().messages, key);
+	}
+
+	/**
+	 * Get the message for a certain key with language variables without arguments replaced (result is shared and cannot be modified)
+	 * @param key The key of the message to get
+	 * @return The message as a list of strings
+	 */
+	@Override
+	public List<String> getExpandedMessage(String key) {
+		return getMessage(languages.get().expandedMessages, key);
+	}
+
+	/**
+	 * Get the message for a certain key from the loaded messages
+	 * @param messages The messages to get it from
+	 * @param key      The key of the message to get
+	 * @return The message as a list of strings
+	 */
+	private List<String> getMessage(Map<String, List<String>> messages, String key) {
+		List<String> message = messages.get(key);
+		if(message == null && key.equalsIgnoreCase(Message.CHATLANGUAGEVARIABLE)) {
 			message = chatPrefix;
-		} else if(currentLanguage.containsKey(key)) {
-			message = currentLanguage.get(key);
-		} else {
-			message = defaultLanguage.get(key);
 		}
 		if(message == null) {
 			Log.warn("Did not find message '" + key + "' in the current or default language");
-			return new ArrayList<>();
+			return Collections.emptyList();
 		}
-		return new ArrayList<>(message);
+		return message;
 	}
 
 	/**
-	 * Saves the default language files if not already present
+	 * Saves the default language files that are missing or differ from the ones in the jar
 	 */
 	private void saveDefaults() {
 		// Create the language folder if it not exists
@@ -91,31 +312,48 @@ public class LanguageManager implements MessageProvider {
 			}
 		}
 
+		// Files saved before, to skip unchanged files without reading them
+		File manifestFile = new File(languageFolder, DEFAULTS_MANIFEST);
+		Properties manifest = new Properties();
+		if(manifestFile.isFile()) {
+			try(InputStream input = new FileInputStream(manifestFile)) {
+				manifest.load(input);
+			} catch(IOException | IllegalArgumentException e) {
+				manifest.clear();
+			}
+		}
+
+		int saved = 0, unchanged = 0;
+		boolean manifestChanged = false;
 		try {
 			// Read jar as ZIP file
 			File jarPath = new File(plugin.getClass().getProtectionDomain().getCodeSource().getLocation().toURI());
-			ZipFile jar = new ZipFile(jarPath);
-			Enumeration<? extends ZipEntry> entries = jar.entries();
-
-			// Each entry is a file or directory
-			while(entries.hasMoreElements()) {
-				ZipEntry entry = entries.nextElement();
-
-				// Filter to YAML files in the language directory
-				if(!entry.isDirectory() && entry.getName().startsWith(jarLanguagePath+"/") && entry.getName().endsWith(".yml")) {
-					// Save the file to disk
-					File targetFile = new File(languageFolder.getAbsolutePath() + File.separator + entry.getName().substring(entry.getName().lastIndexOf("/")));
-					try(
-							InputStream input = jar.getInputStream(entry);
-							OutputStream output = new FileOutputStream(targetFile)
-					) {
-						int read;
-						byte[] bytes = new byte[1024];
-						while((read = input.read(bytes)) != -1) {
-							output.write(bytes, 0, read);
+			try(ZipFile jar = new ZipFile(jarPath)) {
+				Enumeration<? extends ZipEntry> entries = jar.entries();
+
+				// Each entry is a file or directory
+				while(entries.hasMoreElements()) {
+					ZipEntry entry = entries.nextElement();
+
+					// Filter to YAML files in the language directory
+					if(!entry.isDirectory() && entry.getName().startsWith(jarLanguagePath+"/") && entry.getName().endsWith(".yml")) {
+						String fileName = entry.getName().substring(entry.getName().lastIndexOf("/")+1);
+						File targetFile = new File(languageFolder, fileName);
+						if(isSaved(entry, targetFile, manifest.getProperty(fileName))) {
+							unchanged++;
+						} else {
+							// Save the file to disk
+							try(InputStream input = jar.getInputStream(entry)) {
+								Files.copy(input, targetFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+								saved++;
+							} catch(IOException e) {
+								Log.warn("Something went wrong saving a default language file: " + targetFile.getAbsolutePath());
+								manifest.remove(fileName);
+								continue;
+							}
 						}
-					} catch(IOException e) {
-						Log.warn("Something went wrong saving a default language file: " + targetFile.getAbsolutePath());
+						String manifestEntry = getManifestEntry(entry, targetFile);
+						manifestChanged |= !manifestEntry.equals(manifest.setProperty(fileName, manifestEntry));
 					}
 				}
 			}
@@ -124,6 +362,104 @@ public class LanguageManager implements MessageProvider {
 		} catch(IOException e) {
 			Log.error("Failed to read zip file:", ExceptionUtils.getStackTrace(e));
 		}
+
+		if(saved > 0) {
+			Log.info("Saved " + saved + " default language files (" + unchanged + " unchanged)");
+		}
+		if(manifestChanged) {
+			try(OutputStream output = new FileOutputStream(manifestFile)) {
+				manifest.store(output, "Default language files saved from the plugin jar, used to skip unchanged files");
+			} catch(IOException e) {
+				Log.warn("Could not save the list of default language files: " + manifestFile.getAbsolutePath());
+			}
+		}
+	}
+
+	/**
+	 * Get the manifest entry of a default language file, which changes when the jar entry or the file on disk changes
+	 * @param entry      The language file in the jar
+	 * @param targetFile The language file on disk
+	 * @return The CRC and size of the jar entry, followed by the size and modification time of the file
+	 */
+	static String getManifestEntry(ZipEntry entry, File targetFile) {
+		return entry.getCrc()+","+entry.getSize()+","+targetFile.length()+","+targetFile.lastModified();
+	}
+
+	/**
+	 * Check if a default language file on disk is the same as the one in the jar
+	 * @param entry         The language file in the jar
+	 * @param targetFile    The language file on disk
+	 * @param manifestEntry The manifest entry of the file, as saved by {@link #saveDefaults()}, or null if not saved before
+	 * @return true if the file on disk has the same content as the jar entry, otherwise false
+	 */
+	static boolean isSaved(ZipEntry entry, File targetFile, String manifestEntry) {
+		if(!targetFile.isFile() || entry.getSize() < 0 || entry.getCrc() < 0 || targetFile.length() != entry.getSize()) {
+			return false;
+		}
+
+		// Saved before from the same jar entry and not touched since then
+		if(getManifestEntry(entry, targetFile).equals(manifestEntry)) {
+			return true;
+		}
+
+		// Compare the content
+		CRC32 crc = new CRC32();
+		byte[] bytes = new byte[8192];
+		try(InputStream input = new FileInputStream(targetFile)) {
+			int read;
+			while((read = input.read(bytes)) != -1) {
+				crc.update(bytes, 0, read);
+			}
+		} catch(IOException e) {
+			return false;
+		}
+		return crc.getValue() == entry.getCrc();
+	}
+
+	/**
+	 * Load the current and default language
+	 * @param currentLanguageName The name of the language that should be active
+	 * @param defaultLanguageName The name of the language to use for messages missing in the current language
+	 * @return The loaded languages
+	 */
+	private Languages loadLanguages(String currentLanguageName, String defaultLanguageName) {
+		Map<String, List<String>> messages = new HashMap<>();
+		if(!defaultLanguageName.equals(currentLanguageName)) {
+			addMessages(messages, loadLanguage(defaultLanguageName));
+		}
+		addMessages(messages, loadLanguage(currentLanguageName));
+		if(chatPrefix != null) {
+			messages.put(Message.CHATLANGUAGEVARIABLE, chatPrefix);
+		}
+
+		// Find loops now instead of when sending, and insert messages included without arguments
+		LanguageGraph graph = new LanguageGraph(messages);
+		for(List<String> loop : graph.getLoops()) {
+			Log.warn("Messages include each other in a loop, sending them will fail:", StringUtils.join(loop, ", "));
+		}
+		Map<String, List<String>> expanded = graph.expand();
+		for(Map.Entry<String, List<String>> message : messages.entrySet()) {
+			List<String> lines = Collections.unmodifiableList(message.getValue());
+			// Unchanged messages share their list
+			List<String> expandedLines = expanded.get(message.getKey());
+			expanded.put(message.getKey(), expandedLines == message.getValue() ? lines : Collections.unmodifiableList(expandedLines));
+			message.setValue(lines);
+		}
+		return new Languages(currentLanguageName, defaultLanguageName, messages, expanded);
+	}
+
+	/**
+	 * Add messages to the combined messages, replacing messages with the same key
+	 * @param messages The combined messages to add to
+	 * @param language The messages of a language
+	 */
+	private static void addMessages(Map<String, List<String>> messages, Map<String, List<String>> language) {
+		for(Map.Entry<String, List<String>> message : language.entrySet()) {
+			// The chat prefix is used for any capitalization of its key
+			if(message.getValue() != null && !message.getKey().equalsIgnoreCase(Message.CHATLANGUAGEVARIABLE)) {
+				messages.put(message.getKey(), message.getValue());
+			}
+		}
 	}
 
 	/**
@@ -142,11 +478,18 @@ public class LanguageManager implements MessageProvider {
 	 * @return Map with the messages loaded from the file
 	 */
 	private Map<String, List<String>> loadLanguage(String key, boolean convert) {
+		File file = new File(languageFolder.getAbsolutePath()+File.separator+key+".yml");
+
+		// Use the messages stored the last time the file has been loaded, if the file has not been changed since
+		Map<String, List<String>> cached = LanguageCache.read(file);
+		if(cached != null) {
+			return cached;
+		}
+
 		Map<String, List<String>> result = new HashMap<>();
 
 		// Load the language file
 		boolean convertFromTransifex = false;
-		File file = new File(languageFolder.getAbsolutePath()+File.separator+key+".yml");
 		try(
 				InputStreamReader reader = new InputStreamReader(new FileInputStream(file), Charsets.UTF_8)
 		) {
@@ -181,6 +524,9 @@ public class LanguageManager implements MessageProvider {
 			return loadLanguage(key, false);
 		}
 
+		if(!result.isEmpty() && !LanguageCache.write(file, result)) {
+			Log.warn("Could not write the cache of language file: " + file.getAbsolutePath());
+		}
 		return result;
 	}
 
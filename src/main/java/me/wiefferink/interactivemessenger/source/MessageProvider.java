@@ -10,7 +10,7 @@ public interface MessageProvider {
 	/**
 	 * Get the message that is linked to the specified key
 	 * @param key The key of the message to get
-	 * @return A list with the lines of the message
+	 * @return A list with the lines of the message, will not be modified by the caller (so it can be shared)
 	 */
 	List<String> getMessage(String key);
 }
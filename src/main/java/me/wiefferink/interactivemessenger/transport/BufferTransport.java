@@ -0,0 +1,19 @@
+package me.wiefferink.interactivemessenger.transport;
+
+import org.bukkit.entity.Player;
+
+import java.nio.CharBuffer;
+
+/**
+ * Transport that can send JSON straight from the buffers of the generator, without a String for each line
+ */
+public interface BufferTransport extends MessageTransport {
+
+	/**
+	 * Send a tellraw JSON component to a player
+	 * @param player The player to send the component to
+	 * @param json   The JSON component to send, only valid during this call
+	 * @return true if sending worked, false if it failed (plain messages will be used instead)
+	 */
+	boolean sendJson(Player player, CharBuffer json);
+}
@@ -0,0 +1,20 @@
+package me.wiefferink.interactivemessenger.transport;
+
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+
+/**
+ * Sends messages by executing the tellraw command as the console, works on all servers
+ */
+public class CommandTransport implements MessageTransport {
+
+	@Override
+	public boolean sendJson(Player player, String json) {
+		return Bukkit.dispatchCommand(Bukkit.getConsoleSender(), "tellraw "+player.getName()+" "+json);
+	}
+
+	@Override
+	public void sendPlain(Player player, String message) {
+		player.sendMessage(message);
+	}
+}
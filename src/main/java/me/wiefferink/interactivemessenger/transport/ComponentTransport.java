@@ -0,0 +1,25 @@
+package me.wiefferink.interactivemessenger.transport;
+
+import org.bukkit.entity.Player;
+
+/**
+ * Transport that converts JSON into chat components before sending
+ * The components of a message are created once and reused for every player the message is send to.
+ */
+public interface ComponentTransport extends MessageTransport {
+
+	/**
+	 * Convert a tellraw JSON component into the form that is send to players
+	 * @param json The JSON component to convert
+	 * @return The converted component, or null if converting failed
+	 */
+	Object toComponent(String json);
+
+	/**
+	 * Send a component created by {@link #toComponent(String)} to a player
+	 * @param player    The player to send the component to
+	 * @param component The component to send, should not be modified
+	 * @return true if sending worked, false if it failed (plain messages will be used instead)
+	 */
+	boolean sendComponent(Player player, Object component);
+}
@@ -0,0 +1,24 @@
+package me.wiefferink.interactivemessenger.transport;
+
+import org.bukkit.entity.Player;
+
+/**
+ * Delivers generated messages to players
+ */
+public interface MessageTransport {
+
+	/**
+	 * Send a tellraw JSON component to a player
+	 * @param player The player to send the component to
+	 * @param json   The JSON component to send
+	 * @return true if sending worked, false if it failed (plain messages will be used instead)
+	 */
+	boolean sendJson(Player player, String json);
+
+	/**
+	 * Send a message with native formatting codes to a player
+	 * @param player  The player to send the message to
+	 * @param message The message to send
+	 */
+	void sendPlain(Player player, String message);
+}
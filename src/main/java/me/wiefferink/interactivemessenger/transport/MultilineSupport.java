@@ -0,0 +1,17 @@
+package me.wiefferink.interactivemessenger.transport;
+
+import org.bukkit.entity.Player;
+
+/**
+ * Decides which players can receive a message with multiple lines as a single component
+ * Line breaks inside a component are supported by 1.8 and later clients.
+ */
+public interface MultilineSupport {
+
+	/**
+	 * Check if a player supports line breaks inside a component
+	 * @param player The player to check
+	 * @return true to send multi-line messages as a single component, false to send each line separately
+	 */
+	boolean supportsMultiline(Player player);
+}
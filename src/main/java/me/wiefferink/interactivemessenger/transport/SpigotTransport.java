@@ -0,0 +1,81 @@
+package me.wiefferink.interactivemessenger.transport;
+
+import me.wiefferink.interactivemessenger.Log;
+import org.apache.commons.lang.exception.ExceptionUtils;
+import org.bukkit.entity.Player;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * Sends messages as chat components directly to the connection of the player, skipping the command system
+ * Requires a Spigot server, the chat component API is accessed with reflection because it is not part of Bukkit
+ */
+public class SpigotTransport implements ComponentTransport {
+
+	private final Method spigotMethod;
+	private final Method parseMethod;
+	private final Method sendMessageMethod;
+
+	/**
+	 * Constructor
+	 * @throws IllegalStateException when the Spigot chat component API is not available
+	 */
+	public SpigotTransport() {
+		try {
+			spigotMethod = Player.class.getMethod("spigot");
+			parseMethod = Class.forName("net.md_5.bungee.chat.ComponentSerializer").getMethod("parse", String.class);
+			Class<?> componentArray = Class.forName("[Lnet.md_5.bungee.api.chat.BaseComponent;");
+			sendMessageMethod = spigotMethod.getReturnType().getMethod("sendMessage", componentArray);
+		} catch(ClassNotFoundException | NoSuchMethodException e) {
+			throw new IllegalStateException("Spigot chat component API is not available", e);
+		}
+	}
+
+	/**
+	 * Check if the Spigot chat component API is available on this server
+	 * @return true if a SpigotTransport can be created, otherwise false
+	 */
+	public static boolean isSupported() {
+		try {
+			new SpigotTransport();
+			return true;
+		} catch(IllegalStateException e) {
+			return false;
+		}
+	}
+
+	@Override
+	public boolean sendJson(Player player, String json) {
+		return sendComponent(player, toComponent(json));
+	}
+
+	@Override
+	public Object toComponent(String json) {
+		try {
+			return parseMethod.invoke(null, json);
+		} catch(IllegalAccessException | InvocationTargetException e) {
+			Log.error("Parsing chat components did not work:", ExceptionUtils.getStackTrace(e));
+			return null;
+		}
+	}
+
+	@Override
+	public boolean sendComponent(Player player, Object component) {
+		if(component == null) {
+			return false;
+		}
+		try {
+			sendMessageMethod.invoke(spigotMethod.invoke(player), component);
+			return true;
+		} catch(IllegalAccessException | InvocationTargetException e) {
+			Log.error("Sending chat components did not work:", ExceptionUtils.getStackTrace(e));
+			return false;
+		}
+	}
+
+	@Override
+	public void sendPlain(Player player, String message) {
+		player.sendMessage(message);
+	}
+}
@@ -0,0 +1,47 @@
+package me.wiefferink.interactivemessenger.processing;
+
+import me.wiefferink.interactivemessenger.source.MessageProvider;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static junit.framework.TestCase.assertEquals;
+
+/**
+ * Tests for compiling templates, in this package to reach the package-private cache
+ */
+public class TestMessageTemplate {
+
+	@Test
+	public void renderedReplacementsShouldNotBeCached() {
+		final Map<String, List<String>> messages = new HashMap<>();
+		messages.put("greeting", Collections.singletonList("Hello %0%!"));
+		messages.put("wrapper", Collections.singletonList("[%lang:greeting|%0%|%]"));
+		Message.init(new MessageProvider() {
+			@Override
+			public List<String> getMessage(String key) {
+				List<String> message = messages.get(key);
+				return message == null ? Collections.<String>emptyList() : message;
+			}
+		}, null);
+
+		// Compile the source lines once
+		MessageTemplate.clearCache();
+		Message.fromKey("wrapper").replacements("first").get();
+		Message.fromString("a %0% b").replacements(Message.fromKey("greeting").replacements("first")).get();
+		Message.fromString("a %0% b").replacements(Message.fromKey("greeting").replacements("first").inline()).get();
+		int cached = MessageTemplate.getCacheSize();
+
+		for(int i = 0; i < 100; i++) {
+			assertEquals(Arrays.asList("[", "Hello player"+i+"!", "]"), Message.fromKey("wrapper").replacements("player"+i).get());
+			assertEquals(Arrays.asList("a ", "Hello player"+i+"!", " b"), Message.fromString("a %0% b").replacements(Message.fromKey("greeting").replacements("player"+i)).get());
+			assertEquals(Collections.singletonList("a Hello player"+i+"! b"), Message.fromString("a %0% b").replacements(Message.fromKey("greeting").replacements("player"+i).inline()).get());
+		}
+		assertEquals("Rendering other values should not add templates", cached, MessageTemplate.getCacheSize());
+	}
+
+}
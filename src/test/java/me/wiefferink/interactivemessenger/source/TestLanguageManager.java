@@ -0,0 +1,125 @@
+package me.wiefferink.interactivemessenger.source;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Properties;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertTrue;
+
+/**
+ * Tests for skipping default language files that are already saved, in this package to reach the package-private checks
+ */
+public class TestLanguageManager {
+
+	private static final String CONTENT = "single: 'Hello world!'";
+
+	private File folder;
+	private ZipFile jar;
+	private ZipEntry entry;
+
+	@Before
+	public void createJar() throws IOException {
+		folder = Files.createTempDirectory("languages").toFile();
+		File jarFile = new File(folder, "plugin.jar");
+		try(ZipOutputStream output = new ZipOutputStream(new FileOutputStream(jarFile))) {
+			output.putNextEntry(new ZipEntry("lang/EN.yml"));
+			output.write(CONTENT.getBytes(StandardCharsets.UTF_8));
+			output.closeEntry();
+		}
+		jar = new ZipFile(jarFile);
+		entry = jar.getEntry("lang/EN.yml");
+	}
+
+	@After
+	public void deleteFolder() throws IOException {
+		jar.close();
+		File[] files = folder.listFiles();
+		if(files != null) {
+			for(File file : files) {
+				file.delete();
+			}
+		}
+		folder.delete();
+	}
+
+	/**
+	 * Write a language file to the temporary folder
+	 * @param content The content of the file
+	 * @return The written file
+	 * @throws IOException When writing the file fails
+	 */
+	private File writeLanguageFile(String content) throws IOException {
+		File file = new File(folder, "EN.yml");
+		try(OutputStream output = new FileOutputStream(file)) {
+			output.write(content.getBytes(StandardCharsets.UTF_8));
+		}
+		return file;
+	}
+
+	@Test
+	public void manifestShouldSurviveSaving() throws IOException {
+		File file = writeLanguageFile(CONTENT);
+		Properties manifest = new Properties();
+		manifest.setProperty(file.getName(), LanguageManager.getManifestEntry(entry, file));
+		File manifestFile = new File(folder, ".defaults");
+		try(OutputStream output = new FileOutputStream(manifestFile)) {
+			manifest.store(output, null);
+		}
+
+		Properties loaded = new Properties();
+		try(InputStream input = new FileInputStream(manifestFile)) {
+			loaded.load(input);
+		}
+		assertEquals(manifest, loaded);
+		assertTrue("A file matching its manifest entry should be saved", LanguageManager.isSaved(entry, file, loaded.getProperty(file.getName())));
+	}
+
+	@Test
+	public void sameSizeWithOtherContentShouldNotBeSaved() throws IOException {
+		File file = writeLanguageFile(CONTENT);
+		long lastModified = file.lastModified();
+		String manifestEntry = LanguageManager.getManifestEntry(entry, file);
+
+		writeLanguageFile(CONTENT.replace('w', 'W'));
+		assertEquals(entry.getSize(), file.length());
+		assertFalse("Changed content should not be seen as saved", LanguageManager.isSaved(entry, file, null));
+
+		// Changed to a later time to miss the manifest entry, an equal time is indistinguishable without reading the file
+		file.setLastModified(lastModified+2000);
+		assertFalse("Changed content should not match the old manifest entry", LanguageManager.isSaved(entry, file, manifestEntry));
+	}
+
+	@Test
+	public void touchedFileShouldBeCompared() throws IOException {
+		File file = writeLanguageFile(CONTENT);
+		String manifestEntry = LanguageManager.getManifestEntry(entry, file);
+
+		file.setLastModified(file.lastModified()+2000);
+		assertFalse("The manifest entry should change with the modification time", manifestEntry.equals(LanguageManager.getManifestEntry(entry, file)));
+		assertTrue("A touched file with the same content should be saved", LanguageManager.isSaved(entry, file, manifestEntry));
+		assertTrue("A file with the same content should be saved without a manifest entry", LanguageManager.isSaved(entry, file, null));
+	}
+
+	@Test
+	public void otherSizeShouldNotBeSaved() throws IOException {
+		File file = writeLanguageFile(CONTENT+"\n");
+		assertFalse(LanguageManager.isSaved(entry, file, LanguageManager.getManifestEntry(entry, file)));
+		assertFalse(LanguageManager.isSaved(entry, new File(folder, "missing.yml"), null));
+	}
+
+}
@@ -26,7 +26,7 @@ public class YAMLMessageProvider implements MessageProvider {
 	}
 
 	/**
-	 * Get the message for a certain key (result can be modified)
+	 * Get the message for a certain key (result is shared and cannot be modified)
 	 * @param key The key of the message to get
 	 * @return The message as a list of strings
 	 */
@@ -34,9 +34,9 @@ public class YAMLMessageProvider implements MessageProvider {
 	public List<String> getMessage(String key) {
 		List<String> message = messages.get(key);
 		if(message == null) {
-			return new ArrayList<>();
+			return Collections.emptyList();
 		}
-		return new ArrayList<>(message);
+		return Collections.unmodifiableList(message);
 	}
 
 	/**
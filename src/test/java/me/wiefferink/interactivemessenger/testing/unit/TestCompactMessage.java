@@ -0,0 +1,30 @@
+package me.wiefferink.interactivemessenger.testing.unit;
+
+import me.wiefferink.interactivemessenger.message.CompactMessage;
+import me.wiefferink.interactivemessenger.message.InteractiveMessage;
+import me.wiefferink.interactivemessenger.parsers.YamlParser;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static junit.framework.TestCase.assertEquals;
+
+public class TestCompactMessage {
+
+	@Test
+	public void conversionShouldKeepContent() {
+		InteractiveMessage originalMessage = YamlParser.parse(Arrays.asList(
+				"[red]hello [bold]world![break]",
+				"[blue]click [italic]me",
+				"  hover: [green]first",
+				"  hover: [underline]second",
+				"  command: /test"
+		));
+		CompactMessage compact = CompactMessage.from(originalMessage);
+
+		assertEquals("Converting back should give the same InteractiveMessage", originalMessage, compact.toInteractiveMessage());
+		assertEquals(originalMessage.size(), compact.getPartCount());
+		assertEquals("hello world!click mefirst\nsecond", new String(compact.getTextBuffer()));
+	}
+
+}
@@ -6,6 +6,7 @@ import me.wiefferink.interactivemessenger.parsers.YamlParser;
 import org.junit.Test;
 
 import java.util.Arrays;
+import java.util.List;
 
 import static junit.framework.TestCase.assertEquals;
 
@@ -20,4 +21,20 @@ public class TestConsoleGenerator {
 		assertEquals("ConsoleGenerator should not change the given InteractiveMessage", originalMessage, usedMessage);
 	}
 
+	@Test
+	public void streamingShouldMatchMessage() {
+		List<String> input = Arrays.asList("[red]hello [bold]world![break]", "[blue]click me", "  hover: [green]first", "  hover: second", "  command: /test", "[reset]end");
+		ConsoleGenerator generator = new ConsoleGenerator();
+		YamlParser.parse(input, generator);
+
+		assertEquals("Parsing straight into the generator should give the same result", ConsoleGenerator.generate(YamlParser.parse(input)), generator.getResult());
+	}
+
+	@Test
+	public void styleTransitionsShouldBeMinimal() {
+		String result = ConsoleGenerator.generate(YamlParser.parse(Arrays.asList("[red]a[bold]b[/bold]c[blue]d[reset]e")));
+
+		assertEquals("§ca§lb§r§cc§9d§fe", result);
+	}
+
 }
@@ -0,0 +1,75 @@
+package me.wiefferink.interactivemessenger.testing.unit;
+
+import me.wiefferink.interactivemessenger.source.LanguageCache;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertNull;
+import static junit.framework.TestCase.assertTrue;
+
+public class TestLanguageCache {
+
+	/**
+	 * Create a temporary language file
+	 * @param content The content of the file
+	 * @return The created file
+	 * @throws IOException When writing the file fails
+	 */
+	private File createLanguageFile(String content) throws IOException {
+		File file = File.createTempFile("language", ".yml");
+		file.deleteOnExit();
+		LanguageCache.getCacheFile(file).deleteOnExit();
+		writeFile(file, content);
+		return file;
+	}
+
+	/**
+	 * Replace the content of a file
+	 * @param file    The file to write
+	 * @param content The new content
+	 * @throws IOException When writing the file fails
+	 */
+	private void writeFile(File file, String content) throws IOException {
+		try(OutputStream output = new FileOutputStream(file)) {
+			output.write(content.getBytes(StandardCharsets.UTF_8));
+		}
+	}
+
+	@Test
+	public void cacheShouldKeepMessages() throws IOException {
+		File file = createLanguageFile("single: 'Hello world!'");
+		Map<String, List<String>> messages = new HashMap<>();
+		messages.put("single", Collections.singletonList("Hello wörld!"));
+		messages.put("multiple", Arrays.asList("[red]Hello ", "", "world!"));
+		messages.put("null", Collections.singletonList((String)null));
+
+		assertNull("There should be no cache before writing it", LanguageCache.read(file));
+		assertTrue(LanguageCache.write(file, messages));
+		assertEquals(messages, LanguageCache.read(file));
+	}
+
+	@Test
+	public void changedFileShouldInvalidateCache() throws IOException {
+		File file = createLanguageFile("single: 'Hello world!'");
+		long lastModified = file.lastModified();
+		assertTrue(LanguageCache.write(file, Collections.singletonMap("single", Collections.singletonList("Hello world!"))));
+
+		// Same size and modification time, only the checksum differs
+		writeFile(file, "single: 'Hello wurld!'");
+		file.setLastModified(lastModified);
+
+		assertNull("A cache of different content should not be used", LanguageCache.read(file));
+	}
+
+}
@@ -0,0 +1,108 @@
+package me.wiefferink.interactivemessenger.testing.unit;
+
+import me.wiefferink.interactivemessenger.processing.Message;
+import me.wiefferink.interactivemessenger.source.ExpandedMessageProvider;
+import me.wiefferink.interactivemessenger.source.LanguageGraph;
+import me.wiefferink.interactivemessenger.source.MessageProvider;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertTrue;
+
+public class TestLanguageGraph {
+
+	/**
+	 * Use a map to provide messages to Message#fromKey()
+	 * @param messages The messages to provide
+	 */
+	private void provide(final Map<String, List<String>> messages) {
+		Message.init(new MessageProvider() {
+			@Override
+			public List<String> getMessage(String key) {
+				List<String> message = messages.get(key);
+				return message == null ? Collections.<String>emptyList() : message;
+			}
+		}, null);
+	}
+
+	@Test
+	public void loopsShouldBeFound() {
+		Map<String, List<String>> messages = new HashMap<String, List<String>>() {{
+			put("a", Collections.singletonList("a %lang:b%"));
+			put("b", Collections.singletonList("b %lang:a|x|%"));
+			put("self", Collections.singletonList("%lang:self%"));
+			put("usesLoop", Collections.singletonList("%lang:a%"));
+			put("plain", Collections.singletonList("%lang:missing%"));
+		}};
+
+		Set<Set<String>> loops = new HashSet<>();
+		for(List<String> loop : new LanguageGraph(messages).getLoops()) {
+			loops.add(new HashSet<>(loop));
+		}
+
+		assertEquals(new HashSet<>(Arrays.asList(new HashSet<>(Arrays.asList("a", "b")), Collections.singleton("self"))), loops);
+	}
+
+	@Test
+	public void staticReferencesShouldBeExpanded() {
+		Map<String, List<String>> messages = new HashMap<String, List<String>>() {{
+			put("prefix", Collections.singletonList("[darkgreen][Shop][reset] "));
+			put("hello", Collections.singletonList("Hello %0%"));
+			put("multiple", Arrays.asList("first", "second"));
+			put("welcome", Collections.singletonList("%lang:prefix%Welcome! %lang:hello%"));
+			put("hover", Arrays.asList("a%lang:multiple%b", "  hover: h"));
+			put("arguments", Collections.singletonList("%lang:hello|x|% \\%lang:hello%"));
+		}};
+		Map<String, List<String>> expanded = new LanguageGraph(messages).expand();
+
+		assertEquals(Arrays.asList("[darkgreen][Shop][reset] ", "Welcome! ", "Hello %0%"), expanded.get("welcome"));
+		assertEquals(Arrays.asList("a", "  hover: h", "first", "second", "  hover: h", "b", "  hover: h"), expanded.get("hover"));
+		assertEquals(messages.get("arguments"), expanded.get("arguments"));
+
+		// Rendering should give the same result as inserting while rendering
+		for(String key : messages.keySet()) {
+			provide(messages);
+			List<String> original = Message.fromKey(key).replacements("you").get();
+			provide(expanded);
+			assertEquals("Rendering " + key, original, Message.fromKey(key).replacements("you").get());
+		}
+	}
+
+	@Test
+	public void noLanguageReplacementsShouldKeepVariables() {
+		final Map<String, List<String>> messages = new HashMap<String, List<String>>() {{
+			put("prefix", Collections.singletonList("[darkgreen][Shop][reset] "));
+			put("welcome", Collections.singletonList("%lang:prefix%Welcome!"));
+		}};
+		final Map<String, List<String>> expanded = new LanguageGraph(messages).expand();
+		final Set<String> expandedKeys = new HashSet<>();
+		Message.init(new ExpandedMessageProvider() {
+			@Override
+			public List<String> getMessage(String key) {
+				return messages.get(key);
+			}
+
+			@Override
+			public List<String> getExpandedMessage(String key) {
+				expandedKeys.add(key);
+				return expanded.get(key);
+			}
+		}, null);
+
+		assertEquals(Collections.singletonList("%lang:prefix%Welcome!"), Message.fromKey("welcome").noLanguageReplacements().get());
+		assertEquals(Collections.singletonList("%lang:prefix%Welcome!"), Message.fromKey("welcome").getRaw());
+		assertTrue("Expanded messages should not be used without language replacements", expandedKeys.isEmpty());
+
+		assertEquals(Arrays.asList("[darkgreen][Shop][reset] ", "Welcome!"), Message.fromKey("welcome").get());
+		assertEquals(Collections.singleton("welcome"), expandedKeys);
+	}
+
+}
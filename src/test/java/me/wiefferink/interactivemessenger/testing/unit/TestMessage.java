@@ -2,7 +2,10 @@ package me.wiefferink.interactivemessenger.testing.unit;
 
 import me.wiefferink.interactivemessenger.processing.Limit;
 import me.wiefferink.interactivemessenger.processing.Message;
+import me.wiefferink.interactivemessenger.processing.RenderedMessage;
+import me.wiefferink.interactivemessenger.processing.Replacement;
 import me.wiefferink.interactivemessenger.processing.ReplacementLimitReachedException;
+import me.wiefferink.interactivemessenger.processing.ReplacementProvider;
 import me.wiefferink.interactivemessenger.source.MessageProvider;
 import me.wiefferink.interactivemessenger.source.YAMLMessageProvider;
 import org.junit.BeforeClass;
@@ -10,12 +13,18 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.Timeout;
 
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.StringWriter;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static junit.framework.TestCase.assertEquals;
 import static junit.framework.TestCase.assertFalse;
@@ -93,6 +102,22 @@ public class TestMessage {
 		testFromKey("multilineWithoutNewlines3", "Hello world! More text\n\n");
 	}
 
+	@Test
+	public void fromKeyShouldCopyOnChange() {
+		assertEquals(Arrays.asList("%lang:prefix%", "Hello ", "world!", "!"), Message.fromKey("multiple").prefix().append("!").getRaw());
+		assertEquals(Arrays.asList("a", "Hello world!"), Message.fromKey("single").prepend("a").getRaw());
+
+		// Results can be changed by the caller
+		List<String> lines = Message.fromKey("multiple").get();
+		lines.add("!");
+		assertEquals(Arrays.asList("Hello ", "world!", "!"), lines);
+		Message.fromKey("single").getRaw().add("!");
+
+		// Changes should not end up in the provided messages
+		testFromKey("multiple", "Hello ", "world!");
+		testFromKey("single", "Hello world!");
+	}
+
 	@Test
 	public void isEmpty() {
 		assertTrue(Message.fromString(null).isEmpty());
@@ -156,6 +181,66 @@ public class TestMessage {
 		assertEquals(Arrays.asList("de", "f", "a", "bc"), Message.empty().prepend(Message.fromList(Arrays.asList("a", "bc"))).prepend(Message.fromList(Arrays.asList("de", "f"))).getRaw());
 	}
 
+	@Test
+	public void replacements() {
+		// Indexed
+		assertEquals(Collections.singletonList("a x b y c x"), Message.fromString("a %0% b %1% c %0%").replacements("x", "y").get());
+		assertEquals(Collections.singletonList("a \\%0% b x"), Message.fromString("a \\%0% b %0%").replacements("x").get());
+		assertEquals(Collections.singletonList("\\%0y"), Message.fromString("\\%0%1%").replacements("x", "y").get());
+		assertEquals(Collections.singletonList("a \\%1\\% \\[red]"), Message.fromString("a %0%").replacements("%1% [red]", "y").get());
+
+		// Named
+		assertEquals(Collections.singletonList("%unknown% x"), Message.fromString("%unknown% %name%").replacements(Replacement.name("name", "x")).get());
+		assertEquals(Collections.singletonList("first"), Message.fromString("%name%").replacements(Replacement.name("name", "first"), Replacement.name("name", "second")).get());
+
+		// Language
+		assertEquals(Arrays.asList("a ", "Hello x!", " b"), Message.fromString("a %lang:replacement-argument|x|% b").get());
+		assertEquals(Arrays.asList("a ", "Hello y!"), Message.fromString("a %lang:replacement-argument%").replacements("y").get());
+		assertEquals(Collections.singletonList("a %lang:limit-hello%"), Message.fromString("a %lang:limit-hello%").noLanguageReplacements().get());
+
+		// Messages
+		assertEquals(Arrays.asList("[", "First x", "Second", "]"), Message.fromString("[%0%]").replacements(Message.fromKey("replacement-multiple").replacements("x")).get());
+		assertEquals(Collections.singletonList("[in y] y"), Message.fromString("[%0%] %1%").replacements(Message.fromString("in %1%").inline(), "y").get());
+
+		// Interactive lines are copied to all parts of a split line
+		assertEquals(Arrays.asList("a ", "hover: h", "First x", "Second", "hover: h"), Message.fromList(Arrays.asList("a %lang:replacement-multiple|x|%", "hover: h")).get());
+	}
+
+	@Test
+	public void renderAsync() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<RenderedMessage>> results = new ArrayList<>();
+			for(int i = 0; i < 200; i++) {
+				results.add(Message.fromString("[red]%0% %lang:replacement-argument|%1%|%").replacements(i, "world").renderAsync(executor));
+			}
+			for(int i = 0; i < results.size(); i++) {
+				RenderedMessage rendered = results.get(i).get();
+				assertEquals(Arrays.asList("[red]" + i + " ", "Hello world!"), rendered.getLines());
+				assertEquals("\u00A7c" + i + " Hello world!", rendered.getPlain());
+				assertEquals(i + " Hello world!", rendered.getStripped());
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void broadcast() throws Exception {
+		List<StringWriter> outputs = new ArrayList<>();
+		List<BufferedWriter> targets = new ArrayList<>();
+		for(int i = 0; i < 3; i++) {
+			StringWriter output = new StringWriter();
+			outputs.add(output);
+			targets.add(new BufferedWriter(output));
+		}
+		Message.fromString("[bold]Hello %0%!").replacements("world").broadcast(targets);
+		for(int i = 0; i < targets.size(); i++) {
+			targets.get(i).flush();
+			assertEquals("Hello world!" + System.lineSeparator(), outputs.get(i).toString());
+		}
+	}
+
 	private boolean reachesLimit(Message message) {
 		Limit limit = new Limit(100, message);
 		try {
@@ -184,5 +269,82 @@ public class TestMessage {
 		assertTrue(reachesLimit(Message.fromKey("limit-arg").replacements(Message.fromKey("limit-arg"))));
 	}
 
+	@Test
+	public void providedReplacementsShouldBeRemembered() {
+		final int[] calls = new int[2];
+		ReplacementProvider provider = new ReplacementProvider() {
+			@Override
+			public Object provideReplacement(String variable) {
+				if(variable.equals("cached")) {
+					calls[0]++;
+					return "c";
+				} else if(variable.equals("uncached")) {
+					calls[1]++;
+					return Replacement.uncached("u" + calls[1]);
+				}
+				return null;
+			}
+		};
+
+		List<String> result = Message.fromString("%cached% %uncached% %0% %cached% %uncached%")
+				.replacements(Message.fromString("%cached%%uncached%"), provider)
+				.get();
+
+		assertEquals(Arrays.asList("c u1 ", "cu2", " c u3"), result);
+		assertEquals(1, calls[0]);
+		assertEquals(3, calls[1]);
+		assertEquals("u4", provider.provideReplacement("uncached").toString());
+	}
+
+	@Test
+	public void slowReplacementShouldStopAtDeadline() {
+		Message message = Message.fromString("%fast% %slow% %lang:single%").replacements(new ReplacementProvider() {
+			@Override
+			public Object provideReplacement(String variable) {
+				if(variable.equals("slow")) {
+					try {
+						Thread.sleep(500);
+					} catch(InterruptedException ignored) {
+					}
+				}
+				return variable;
+			}
+		});
+		Limit limit = new Limit(Message.REPLACEMENTLIMIT, message).timeout(200, TimeUnit.MILLISECONDS);
+		try {
+			message.doReplacements(limit);
+			throw new AssertionError("Deadline should be reached");
+		} catch(ReplacementLimitReachedException e) {
+			assertTrue(e.isTimedOut());
+			assertEquals(Limit.Phase.PROVIDER, e.getPhase());
+			assertEquals("slow", e.getKey());
+			assertEquals(Collections.singletonList("%fast% %slow% %lang:single%"), message.getRaw());
+		}
+	}
+
+	@Test
+	public void deepNestingShouldNotOverflow() {
+		final int depth = 20000;
+		Message.init(new MessageProvider() {
+			@Override
+			public List<String> getMessage(String key) {
+				// Keys can only have letters, levels are written in binary with 'a' and 'b'
+				int level = Integer.parseInt(key.substring("level-".length()).replace('a', '0').replace('b', '1'), 2);
+				return Collections.singletonList(level == depth ? "end" : "%lang:level-" + Integer.toBinaryString(level+1).replace('0', 'a').replace('1', 'b') + "%");
+			}
+		}, null);
+		try {
+			Message message = Message.fromKey("level-a");
+			Limit limit = new Limit(depth+1, message);
+			message.doReplacements(limit);
+			assertEquals(Collections.singletonList("end"), message.getRaw());
+			assertEquals(0, limit.depth);
+		} catch(ReplacementLimitReachedException e) {
+			throw new AssertionError("Limit should not be reached");
+		} finally {
+			initMessage();
+		}
+	}
+
 
 }
@@ -0,0 +1,41 @@
+package me.wiefferink.interactivemessenger.testing.unit;
+
+import me.wiefferink.interactivemessenger.generators.ConsoleGenerator;
+import me.wiefferink.interactivemessenger.message.InteractiveMessage;
+import me.wiefferink.interactivemessenger.message.MessageOptimizer;
+import me.wiefferink.interactivemessenger.parsers.YamlParser;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static junit.framework.TestCase.assertEquals;
+
+public class TestMessageOptimizer {
+
+	@Test
+	public void partsOnTheSameLineShouldBeCombined() {
+		InteractiveMessage message = YamlParser.parse(Arrays.asList("[red]a", "[blue]b"));
+		InteractiveMessage optimized = MessageOptimizer.optimize(message);
+
+		assertEquals(2, message.size());
+		assertEquals(1, optimized.size());
+		assertEquals(2, optimized.getFirst().size());
+		assertEquals(ConsoleGenerator.generate(message), ConsoleGenerator.generate(optimized));
+	}
+
+	@Test
+	public void partsWithTheSameHoverShouldBeCombined() {
+		InteractiveMessage optimized = MessageOptimizer.optimize(YamlParser.parse(Arrays.asList("a", "  hover: h", "b", "  hover: h")));
+
+		assertEquals(1, optimized.size());
+		assertEquals("ab", optimized.getFirst().getFirst().getText());
+	}
+
+	@Test
+	public void interactivePartsShouldStaySeparate() {
+		InteractiveMessage message = YamlParser.parse(Arrays.asList("[red]hello", "  hover: x", "[red]world"));
+
+		assertEquals(message, MessageOptimizer.optimize(message));
+	}
+
+}
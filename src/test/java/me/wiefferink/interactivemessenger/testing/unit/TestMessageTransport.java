@@ -0,0 +1,181 @@
+package me.wiefferink.interactivemessenger.testing.unit;
+
+import me.wiefferink.interactivemessenger.Log;
+import me.wiefferink.interactivemessenger.processing.Message;
+import me.wiefferink.interactivemessenger.transport.ComponentTransport;
+import me.wiefferink.interactivemessenger.transport.InMemoryTransport;
+import me.wiefferink.interactivemessenger.transport.MultilineSupport;
+import org.apache.commons.lang.StringUtils;
+import org.bukkit.entity.Player;
+import org.junit.After;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import static junit.framework.TestCase.assertEquals;
+
+public class TestMessageTransport {
+
+	/**
+	 * Create a player that only knows its name
+	 * @param name The name of the player
+	 * @return The player
+	 */
+	public static Player player(final String name) {
+		return (Player)Proxy.newProxyInstance(Player.class.getClassLoader(), new Class<?>[]{Player.class}, new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				switch(method.getName()) {
+					case "getName":
+						return name;
+					case "hashCode":
+						return name.hashCode();
+					case "equals":
+						return proxy == args[0];
+					case "toString":
+						return "Player(" + name + ")";
+					default:
+						return null;
+				}
+			}
+		});
+	}
+
+	@After
+	public void resetTransport() {
+		Message.useTransport(null);
+		Message.useFancyMessages(true);
+		Message.useMultilineComponents(false);
+	}
+
+	@Test
+	public void sendJson() {
+		InMemoryTransport transport = new InMemoryTransport(true);
+		Message.useTransport(transport);
+		Message.fromList(Arrays.asList("Hello %0%![break]", "Second line")).replacements("world").send(player("test"));
+		assertEquals(Arrays.asList("[\"Hello world!\"]", "[\"Second line\"]"), transport.getJson());
+		assertEquals(Collections.emptyList(), transport.getPlain());
+	}
+
+	@Test
+	public void sendMultiline() {
+		InMemoryTransport transport = new InMemoryTransport(true);
+		Message.useTransport(transport);
+		final Player modern = player("modern");
+		Message.useMultilineComponents(new MultilineSupport() {
+			@Override
+			public boolean supportsMultiline(Player player) {
+				return player == modern;
+			}
+		});
+		Message.fromList(Arrays.asList("Hello %0%![break]", "Second line")).replacements("world").broadcast(Arrays.asList(modern, player("old")));
+		assertEquals(Arrays.asList("{\"text\":\"\",\"extra\":[\"Hello world!\",\"\\n\",\"Second line\"]}", "[\"Hello world!\"]", "[\"Second line\"]"), transport.getJson());
+	}
+
+	@Test
+	public void componentsShouldBeConvertedOnce() {
+		final List<String> converted = new ArrayList<>();
+		final List<Object> sent = new ArrayList<>();
+		Message.useTransport(new ComponentTransport() {
+			@Override
+			public Object toComponent(String json) {
+				converted.add(json);
+				return "component:" + json;
+			}
+
+			@Override
+			public boolean sendComponent(Player player, Object component) {
+				sent.add(component);
+				return true;
+			}
+
+			@Override
+			public boolean sendJson(Player player, String json) {
+				return sendComponent(player, toComponent(json));
+			}
+
+			@Override
+			public void sendPlain(Player player, String message) {
+			}
+		});
+		Message.fromList(Arrays.asList("Hello %0%![break]", "Second line")).replacements("world").broadcast(Arrays.asList(player("first"), player("second")));
+		assertEquals(Arrays.asList("[\"Hello world!\"]", "[\"Second line\"]"), converted);
+		assertEquals(Arrays.<Object>asList("component:[\"Hello world!\"]", "component:[\"Second line\"]", "component:[\"Hello world!\"]", "component:[\"Second line\"]"), sent);
+	}
+
+	@Test
+	public void tooBigShouldBeLoggedOnce() {
+		InMemoryTransport transport = new InMemoryTransport(true);
+		Message.useTransport(transport);
+		final List<String> errors = new ArrayList<>();
+		Logger logger = Logger.getAnonymousLogger();
+		logger.setUseParentHandlers(false);
+		logger.addHandler(new Handler() {
+			@Override
+			public void publish(LogRecord record) {
+				if(record.getLevel() == Level.SEVERE) {
+					errors.add(record.getMessage());
+				}
+			}
+
+			@Override
+			public void flush() {
+			}
+
+			@Override
+			public void close() {
+			}
+		});
+		Log.setLogger(logger);
+		try {
+			String hover = StringUtils.repeat("x", Message.MAXIMUMJSONLENGTH);
+			Message.fromList(Arrays.asList("text", "  hover: " + hover)).broadcast(Arrays.asList(player("first"), player("second"), player("third")));
+		} finally {
+			Log.setLogger(null);
+		}
+		assertEquals(Collections.emptyList(), transport.getJson());
+		assertEquals(1, errors.size());
+	}
+
+	@Test
+	public void sendPlain() {
+		InMemoryTransport transport = new InMemoryTransport(true);
+		Message.useTransport(transport);
+		Message.useFancyMessages(false);
+		Message.fromString("[red]Hello %0%!").replacements("world").send(player("test"));
+		assertEquals(Collections.emptyList(), transport.getJson());
+		assertEquals(Collections.singletonList("§cHello world!"), transport.getPlain());
+	}
+
+	@Test
+	public void broadcastShouldSendToAllPlayers() {
+		InMemoryTransport transport = new InMemoryTransport(false);
+		Message.useTransport(transport);
+		List<Player> players = new ArrayList<>();
+		for(int i = 0; i < 100; i++) {
+			players.add(player("player" + i));
+		}
+
+		int messages = 100;
+		long expectedLength = 0;
+		for(int i = 0; i < messages; i++) {
+			Message message = Message.fromList(Arrays.asList("[green]Region %0% [bold]is for sale", "  hover: Click to buy %0%", "  command: /buy %0%")).replacements("region" + i);
+			List<String> json = message.render().getTellraw();
+			assertEquals(1, json.size());
+			expectedLength += json.get(0).length() * players.size();
+			message.broadcast(players);
+		}
+		assertEquals(messages * players.size(), transport.getSendCount());
+		assertEquals(expectedLength, transport.getSendLength());
+	}
+}
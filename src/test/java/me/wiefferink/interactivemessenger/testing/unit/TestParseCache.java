@@ -0,0 +1,55 @@
+package me.wiefferink.interactivemessenger.testing.unit;
+
+import me.wiefferink.interactivemessenger.message.CompactMessage;
+import me.wiefferink.interactivemessenger.parsers.ParseCache;
+import me.wiefferink.interactivemessenger.parsers.YamlParser;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertSame;
+
+public class TestParseCache {
+
+	@Before
+	public void clear() {
+		ParseCache.clear();
+	}
+
+	@After
+	public void reset() {
+		ParseCache.setMaximumSize(1000);
+		ParseCache.clear();
+	}
+
+	@Test
+	public void parsedOnce() {
+		List<String> input = Arrays.asList("[red]hello![bread]", "  hover: [blue]hover");
+		CompactMessage first = ParseCache.parse(input);
+		CompactMessage second = ParseCache.parse(Arrays.asList("[red]hello![bread]", "  hover: [blue]hover"));
+
+		assertSame(first, second);
+		assertEquals(CompactMessage.from(YamlParser.parse(input)), first);
+		assertEquals(1, ParseCache.getHits());
+		assertEquals(1, ParseCache.getMisses());
+	}
+
+	@Test
+	public void eviction() {
+		ParseCache.setMaximumSize(2);
+		CompactMessage first = ParseCache.parse(Arrays.asList("first"));
+		ParseCache.parse(Arrays.asList("second"));
+		ParseCache.parse(Arrays.asList("first"));
+		ParseCache.parse(Arrays.asList("third"));
+
+		// Second is least recently used
+		assertEquals(2, ParseCache.size());
+		assertSame(first, ParseCache.parse(Arrays.asList("first")));
+		ParseCache.parse(Arrays.asList("second"));
+		assertEquals(4, ParseCache.getMisses());
+	}
+}
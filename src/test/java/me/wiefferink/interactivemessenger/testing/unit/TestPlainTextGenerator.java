@@ -0,0 +1,30 @@
+package me.wiefferink.interactivemessenger.testing.unit;
+
+import me.wiefferink.interactivemessenger.generators.PlainTextGenerator;
+import me.wiefferink.interactivemessenger.message.InteractiveMessage;
+import me.wiefferink.interactivemessenger.parsers.YamlParser;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static junit.framework.TestCase.assertEquals;
+
+public class TestPlainTextGenerator {
+
+	@Test
+	public void interactiveMessageShouldStayIntact() {
+		InteractiveMessage originalMessage = YamlParser.parse(Arrays.asList("[red]hello![bread]", "[blue]this is a message!"));
+		InteractiveMessage usedMessage = originalMessage.copy();
+		PlainTextGenerator.generate(usedMessage);
+
+		assertEquals("PlainTextGenerator should not change the given InteractiveMessage", originalMessage, usedMessage);
+	}
+
+	@Test
+	public void onlyTextShouldRemain() {
+		InteractiveMessage message = YamlParser.parse(Arrays.asList("[red]hello [bold]world![break]", "[blue]click \\§ame", "  hover: [green]hover text", "  command: /test", "[reset]end"));
+
+		assertEquals("hello world!\nclick meend", PlainTextGenerator.generate(message));
+	}
+
+}
@@ -0,0 +1,64 @@
+package me.wiefferink.interactivemessenger.testing.unit;
+
+import me.wiefferink.interactivemessenger.message.Style;
+import me.wiefferink.interactivemessenger.message.TextMessagePart;
+import me.wiefferink.interactivemessenger.message.enums.Color;
+import me.wiefferink.interactivemessenger.message.enums.Format;
+import org.junit.Test;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertSame;
+import static junit.framework.TestCase.assertTrue;
+
+public class TestStyle {
+
+	@Test
+	public void stylesAreShared() {
+		assertSame(Style.PLAIN, Style.of(Color.WHITE, EnumSet.noneOf(Format.class)));
+		assertSame(Style.of(Color.RED, EnumSet.of(Format.BOLD)), Style.PLAIN.withFormat(Format.BOLD).withColor(Color.RED));
+		assertSame(Style.PLAIN, Style.of(Color.RED, EnumSet.of(Format.BOLD)).withoutFormat(Format.BOLD).withColor(null));
+
+		TextMessagePart part = new TextMessagePart().color(Color.BLUE).format(Format.ITALIC);
+		assertSame(Style.of(Color.BLUE, EnumSet.of(Format.ITALIC)), part.getStyle());
+	}
+
+	@Test
+	@SuppressWarnings("deprecation")
+	public void partFormattingShouldBeCopy() {
+		TextMessagePart part = new TextMessagePart().format(Format.BOLD);
+		Set<Format> formatting = part.getFormatting();
+		assertEquals(EnumSet.of(Format.BOLD), formatting);
+
+		// Changing the copy works, but does not change the part
+		formatting.add(Format.ITALIC);
+		formatting.remove(Format.BOLD);
+		assertSame(Style.PLAIN.withFormat(Format.BOLD), part.getStyle());
+		assertTrue(new TextMessagePart().getFormatting().add(Format.ITALIC));
+	}
+
+	@Test
+	public void allCombinations() {
+		for(int id = 0; id < Style.COUNT; id++) {
+			Style style = Style.of(id);
+			assertEquals(id, style.getId());
+			assertSame(style, Style.of(style.getColor(), style.getFormatting()));
+			assertSame(style, Style.of(style.getColor(), style.getFormats()));
+			for(Format format : Format.values()) {
+				assertEquals(style.getFormatting().contains(format), style.hasFormat(format));
+			}
+		}
+		assertEquals(Color.values().length*(1 << Format.values().length), Style.COUNT);
+
+		Style style = Style.of(Color.GOLD, EnumSet.of(Format.BOLD, Format.OBFUSCATE));
+		assertEquals(Color.GOLD, style.getColor());
+		assertTrue(style.hasFormat(Format.OBFUSCATE));
+		assertFalse(style.hasFormat(Format.ITALIC));
+		assertFalse(style.isPlain());
+		assertSame(Style.of(Color.GOLD, EnumSet.noneOf(Format.class)), style.withoutFormatting());
+	}
+
+}
@@ -1,13 +1,22 @@
 package me.wiefferink.interactivemessenger.testing.unit;
 
 import me.wiefferink.interactivemessenger.generators.TellrawGenerator;
+import me.wiefferink.interactivemessenger.message.CompactMessage;
 import me.wiefferink.interactivemessenger.message.InteractiveMessage;
 import me.wiefferink.interactivemessenger.parsers.YamlParser;
+import org.apache.commons.lang.StringUtils;
 import org.junit.Test;
 
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
+import java.util.List;
 
 import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertNotSame;
+import static junit.framework.TestCase.assertSame;
+import static junit.framework.TestCase.assertTrue;
 
 public class TestTellrawGenerator {
 
@@ -20,4 +29,128 @@ public class TestTellrawGenerator {
 		assertEquals("TellrawGenerator should not change the given InteractiveMessage", originalMessage, usedMessage);
 	}
 
+	@Test
+	public void streamingShouldMatchMessage() {
+		List<String> input = Arrays.asList("[red]hello [bold]world![break]", "[blue]click me", "  hover: [green]first", "  hover: second", "  command: /test", "[reset]end");
+		TellrawGenerator generator = new TellrawGenerator();
+		YamlParser.parse(input, generator);
+
+		assertEquals("Parsing straight into the generator should give the same result", TellrawGenerator.generate(YamlParser.parse(input)), generator.getResult());
+	}
+
+	@Test
+	public void compactEscapingShouldOnlyEscapeRequired() {
+		InteractiveMessage message = YamlParser.parse(Arrays.asList("a/b \"q\" \\ \u2013 \u0085 \u0001"));
+		TellrawGenerator safe = new TellrawGenerator();
+		message.accept(safe);
+		TellrawGenerator compact = new TellrawGenerator().compactEscaping(true);
+		message.accept(compact);
+
+		assertEquals(Arrays.asList("[\"a\\/b \\\"q\\\" \\\\ \\u2013 \\u0085 \\u0001\"]"), safe.getResult());
+		assertEquals(Arrays.asList("[\"a/b \\\"q\\\" \\\\ \u2013 \u0085 \\u0001\"]"), compact.getResult());
+	}
+
+	@Test
+	public void minimizedComponentsShouldShareStyle() {
+		InteractiveMessage message = YamlParser.parse(Arrays.asList("[red]hello [bold]world", "  command: /test"));
+		TellrawGenerator generator = new TellrawGenerator().minimizeComponents(true);
+		message.accept(generator);
+
+		assertEquals(Arrays.asList("{\"text\":\"hello \",\"color\":\"red\",\"extra\":[{\"text\":\"world\",\"bold\":true}],\"clickEvent\":{\"action\":\"run_command\",\"value\":\"\\/test\"}}"), generator.getResult());
+	}
+
+	@Test
+	public void longLinesShouldBeSplitBetweenParts() {
+		InteractiveMessage message = YamlParser.parse(Arrays.asList("[red]first part", "  hover: first hover", "[blue]second part", "  command: /second", "[green]third part"));
+		TellrawGenerator generator = new TellrawGenerator().maximumLength(120);
+		message.accept(generator);
+
+		assertFalse(generator.isTooBig());
+		assertEquals(Arrays.asList(
+				"{\"text\":\"\",\"extra\":[{\"text\":\"first part\",\"color\":\"red\"}],\"hoverEvent\":{\"action\":\"show_text\",\"value\":\"first hover\"}}",
+				"{\"text\":\"\",\"extra\":[{\"text\":\"second part\",\"color\":\"blue\"}],\"clickEvent\":{\"action\":\"run_command\",\"value\":\"\\/second\"}}",
+				"{\"text\":\"third part\",\"color\":\"green\"}"
+		), generator.getResult());
+	}
+
+	@Test
+	public void tooBigHoverShouldStopGenerating() {
+		InteractiveMessage message = YamlParser.parse(Arrays.asList("text", "  hover: this hover is too long to fit", "more text"));
+		TellrawGenerator generator = new TellrawGenerator().maximumLength(40);
+		message.accept(generator);
+
+		assertTrue(generator.isTooBig());
+	}
+
+	@Test
+	public void releasedGeneratorShouldBeReusedOnce() {
+		TellrawGenerator.clear();
+		TellrawGenerator generator = TellrawGenerator.acquire();
+		YamlParser.parse(Arrays.asList("[red]" + StringUtils.repeat("big ", 100000)), generator);
+		generator.release();
+		generator.release();
+
+		TellrawGenerator first = TellrawGenerator.acquire();
+		TellrawGenerator second = TellrawGenerator.acquire();
+		assertSame("A released generator should be reused", generator, first);
+		assertNotSame("A generator released twice should only be reused once", first, second);
+
+		// Generating after the big buffers have been dropped should still work
+		List<String> input = Arrays.asList("[red]hello", "[blue]world");
+		YamlParser.parse(input, first);
+		assertEquals(TellrawGenerator.generate(YamlParser.parse(input)), first.getResult());
+		first.release();
+		second.release();
+
+		TellrawGenerator.clear();
+		TellrawGenerator afterClear = TellrawGenerator.acquire();
+		assertNotSame("Generators should not be reused after clearing", first, afterClear);
+		assertNotSame("Generators should not be reused after clearing", second, afterClear);
+		afterClear.release();
+	}
+
+	@Test
+	public void reusedGeneratorShouldNotAllocate() {
+		java.lang.management.ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+		if(!(threadBean instanceof com.sun.management.ThreadMXBean) || !((com.sun.management.ThreadMXBean)threadBean).isThreadAllocatedMemorySupported()) {
+			return;
+		}
+		com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean)threadBean;
+		allocationBean.setThreadAllocatedMemoryEnabled(true);
+		long thread = Thread.currentThread().getId();
+
+		CompactMessage message = CompactMessage.from(YamlParser.parse(Arrays.asList("[red]hello [bold]\"world\"![break]", "[blue]click me", "  hover: [green]first", "  hover: second", "  command: /test", "[reset]end")));
+		ByteBuffer target = ByteBuffer.allocate(4096);
+		int iterations = 1000;
+		// Warm up to grow the buffers and get the code compiled
+		for(int i = 0; i < iterations; i++) {
+			generateInto(message, target);
+		}
+
+		long before = allocationBean.getThreadAllocatedBytes(thread);
+		for(int i = 0; i < iterations; i++) {
+			generateInto(message, target);
+		}
+		long allocated = allocationBean.getThreadAllocatedBytes(thread)-before;
+		assertTrue("Generating with a reused generator should not allocate, allocated "+allocated+" bytes for "+iterations+" messages", allocated < iterations*64);
+	}
+
+	/**
+	 * Generate a message and write all lines of it into a buffer
+	 * @param message The message to generate
+	 * @param target  The buffer to write to, will be cleared first
+	 */
+	private static void generateInto(CompactMessage message, ByteBuffer target) {
+		TellrawGenerator generator = TellrawGenerator.acquire();
+		try {
+			message.accept(generator);
+			target.clear();
+			for(int i = 0; i < generator.getLineCount(); i++) {
+				assertTrue(generator.writeLine(i, target));
+			}
+		} finally {
+			generator.release();
+		}
+	}
+
 }
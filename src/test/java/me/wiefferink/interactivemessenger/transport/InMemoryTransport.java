@@ -0,0 +1,88 @@
+package me.wiefferink.interactivemessenger.transport;
+
+import org.bukkit.entity.Player;
+
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Transport that keeps sent messages in memory, for testing and measuring without a server
+ */
+public class InMemoryTransport implements BufferTransport {
+
+	private final boolean keepMessages;
+	private final List<String> json = new ArrayList<>();
+	private final List<String> plain = new ArrayList<>();
+	private long sendCount = 0;
+	private long sendLength = 0;
+
+	/**
+	 * Constructor
+	 * @param keepMessages true to keep the sent messages, false to only count them
+	 */
+	public InMemoryTransport(boolean keepMessages) {
+		this.keepMessages = keepMessages;
+	}
+
+	@Override
+	public boolean sendJson(Player player, String json) {
+		sendCount++;
+		sendLength += json.length();
+		if(keepMessages) {
+			this.json.add(json);
+		}
+		return true;
+	}
+
+	@Override
+	public boolean sendJson(Player player, CharBuffer json) {
+		sendCount++;
+		sendLength += json.remaining();
+		if(keepMessages) {
+			this.json.add(json.toString());
+		}
+		return true;
+	}
+
+	@Override
+	public void sendPlain(Player player, String message) {
+		sendCount++;
+		sendLength += message.length();
+		if(keepMessages) {
+			plain.add(message);
+		}
+	}
+
+	/**
+	 * Get the JSON components that have been send
+	 * @return The send JSON components
+	 */
+	public List<String> getJson() {
+		return json;
+	}
+
+	/**
+	 * Get the plain messages that have been send
+	 * @return The send plain messages
+	 */
+	public List<String> getPlain() {
+		return plain;
+	}
+
+	/**
+	 * Get the number of sends
+	 * @return The number of JSON components and plain messages that have been send
+	 */
+	public long getSendCount() {
+		return sendCount;
+	}
+
+	/**
+	 * Get the total length of all sends
+	 * @return The number of characters that have been send
+	 */
+	public long getSendLength() {
+		return sendLength;
+	}
+}